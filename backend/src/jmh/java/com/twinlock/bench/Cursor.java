@@ -0,0 +1,26 @@
+package com.twinlock.bench;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Per-thread walk over the roster plus a reusable response buffer. */
+@State(Scope.Thread)
+public class Cursor {
+
+    private int next;
+    public final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    @Setup
+    public void setUp() {
+        // threads start at different nodes so contention is realistic, not lockstep
+        next = ThreadLocalRandom.current().nextInt(1 << 20);
+    }
+
+    public int next(int nodes) {
+        return next++ % nodes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.twinlock.bench;
+
+import com.twinlock.service.SessionJournal;
+import com.twinlock.service.TwinLockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * SessionJournal at 10,000 logged-in nodes (5000 teams), on the temp dir's disk.
+ *
+ * durableSubmit — wrong answers from 8 threads, each returning only once its
+ * record is fsynced; against TwinLockBenchmark.submit this is the price of
+ * durability, and the batch-per-fsync group commit is what keeps it low.
+ *
+ * recover — startup of a service whose data dir holds the snapshot taken at
+ * boot plus {@code records} journal records on top of the 10k logins; the
+ * 0 case is the baseline of building the service and loading the snapshot.
+ *
+ *   mvn -Pjmh compile exec:exec -Djmh.args="JournalBenchmark"
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Live extends RosterState {
+
+        @Param({ "5000" })
+        public int teams;
+
+        private Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("twinlock-journal");
+            populate(teams, journalProps(dir), SessionJournal.class);
+            goLive();
+        }
+
+        @Override
+        protected void cleanUp() throws IOException {
+            deleteTree(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Saved {
+
+        @Param({ "5000" })
+        public int teams;
+
+        @Param({ "0", "200000" })
+        public int records;
+
+        private Path saved;
+        private Path work;
+        private AnnotationConfigApplicationContext restarted;
+
+        /** Runs a journaled service to {@code records} events and keeps a copy of its files. */
+        @Setup(Level.Trial)
+        public void record() throws Exception {
+            Path live = Files.createTempDirectory("twinlock-journal");
+            saved = Files.createTempDirectory("twinlock-journal-saved");
+            RosterState st = new RosterState() {
+            };
+            st.populate(teams, journalProps(live), SessionJournal.class);
+            st.goLive();
+            AtomicInteger left = new AtomicInteger(records);
+            ExecutorService pool = Executors.newFixedThreadPool(64);
+            for (int t = 0; t < 64; t++)
+                pool.execute(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    while (left.getAndDecrement() > 0) {
+                        int i = rnd.nextInt(st.nodes());
+                        if ("LOCKED".equals(st.service.submit(st.teamIds[i], st.nodeIds[i], "wrong-0").get("status")))
+                            st.service.resetNode(st.teamIds[i], st.nodeIds[i]);
+                    }
+                });
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+            // every submit returned, so every record is on disk; closing would compact them away
+            for (String f : new String[] { "snapshot.bin", "journal.bin" })
+                Files.copy(live.resolve(f), saved.resolve(f));
+            st.tearDown();
+            deleteTree(live);
+        }
+
+        @Setup(Level.Iteration)
+        public void stage() throws IOException {
+            work = Files.createTempDirectory("twinlock-journal");
+            for (String f : new String[] { "snapshot.bin", "journal.bin" })
+                Files.copy(saved.resolve(f), work.resolve(f));
+        }
+
+        @TearDown(Level.Iteration)
+        public void unstage() throws IOException {
+            if (restarted != null)
+                restarted.close();
+            restarted = null;
+            deleteTree(work);
+        }
+
+        @TearDown(Level.Trial)
+        public void discard() throws IOException {
+            deleteTree(saved);
+        }
+    }
+
+    /** A wrong answer per call, resetting a node that locks out — as TwinLockBenchmark.submit. */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(8)
+    public Map<String, Object> durableSubmit(Live st, Cursor c) {
+        int i = c.next(st.nodes());
+        Map<String, Object> r = st.service.submit(st.teamIds[i], st.nodeIds[i], "wrong-0");
+        if ("LOCKED".equals(r.get("status")))
+            st.service.resetNode(st.teamIds[i], st.nodeIds[i]);
+        return r;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Threads(1)
+    public TwinLockService recover(Saved st) {
+        st.restarted = RosterState.context(st.teams, journalProps(st.work), SessionJournal.class);
+        return st.restarted.getBean(TwinLockService.class);
+    }
+
+    private static Map<String, Object> journalProps(Path dir) {
+        return Map.of(
+                "twinlock.persistence.enabled", true,
+                "twinlock.persistence.dir", dir.toString(),
+                "twinlock.persistence.snapshot-seconds", 3600);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.twinlock.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.twinlock.TwinLockApplication;
+import com.twinlock.service.LatencyHistogram;
+import com.twinlock.service.TwinLockService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator that replays a live event against the embedded
+ * server over loopback.
+ *
+ * Every team's two nodes log in (spread over the ramp), poll /status every
+ * poll-min..poll-max ms with If-None-Match like main.js, and — once the admin
+ * starts the event — submit every ~solve ms: a few wrong payloads per level
+ * at the configured rate, then the right one, until they unlock or lock out.
+ * Admins refresh the dashboard every admin-refresh ms. Each simulated client
+ * waits for its response before thinking again, so a slow server sees less
+ * offered load, exactly like real terminals.
+ *
+ * With several team counts the steps run back to back on fresh servers and
+ * the first step that breaks the SLO (p99 over slo-ms, >1% errors, or under
+ * 90% of the offered request rate) is reported as the saturation point for the
+ * current -Xmx. Server and clients share the JVM, so the heap figure covers
+ * both.
+ *
+ * mvn -Pjmh compile exec:exec@loadgen -Dloadgen.args="teams=500,2000,5000 duration=60"
+ *
+ * Options, with or without a leading "--" (defaults): teams=100 duration=60 ramp=10 poll-min=2000 poll-max=3000
+ * solve=15000 wrong=0.4 admins=2 admin-refresh=3000 slo-ms=250
+ * url= (target an external server instead — it must run this build, with
+ *      RATE_LIMIT_ENABLED=false since every simulated client shares one address)
+ * any option with a dot is passed to the embedded server as a Spring property,
+ * e.g. spring.threads.virtual.enabled=true
+ * admin-key=TWINLOCK_ADMIN_2024
+ */
+public class LoadGenerator {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String[] ENDPOINTS = { "login", "status", "submit", "admin.status" };
+
+    private final Map<String, String> opts;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "loadgen-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // per step
+    private String base;
+    private volatile boolean running;
+    private final Map<String, Endpoint> hist = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    LoadGenerator(Map<String, String> opts) {
+        this.opts = opts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // devtools would otherwise restart main() inside the embedded server
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> opts = new HashMap<>();
+        for (String a : args) {
+            String kv = a.startsWith("--") ? a.substring(2) : a;
+            int eq = kv.indexOf('=');
+            if (eq > 0)
+                opts.put(kv.substring(0, eq), kv.substring(eq + 1));
+        }
+        new LoadGenerator(opts).run();
+        System.exit(0);
+    }
+
+    private String opt(String key, String def) {
+        return opts.getOrDefault(key, def);
+    }
+
+    private int intOpt(String key, int def) {
+        return Integer.parseInt(opt(key, String.valueOf(def)));
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // STEPS
+    // ════════════════════════════════════════════════════════════════
+
+    void run() throws Exception {
+        int saturatedAt = -1;
+        System.out.printf("heap max %d MB, %d cpus%n", Runtime.getRuntime().maxMemory() >> 20,
+                Runtime.getRuntime().availableProcessors());
+        for (String t : opt("teams", "100").split(",")) {
+            int teams = Integer.parseInt(t.trim());
+            boolean ok = step(teams);
+            if (!ok && saturatedAt < 0)
+                saturatedAt = teams;
+        }
+        System.out.println(saturatedAt < 0 ? "saturation: not reached"
+                : "saturation: " + saturatedAt + " teams (" + 2 * saturatedAt + " nodes) at -Xmx"
+                        + (Runtime.getRuntime().maxMemory() >> 20) + "m");
+        timer.shutdownNow();
+    }
+
+    private boolean step(int teams) throws Exception {
+        ConfigurableApplicationContext ctx = null;
+        String url = opt("url", "");
+        if (url.isEmpty()) {
+            Map<String, String> props = new LinkedHashMap<>();
+            props.put("server.port", "0");
+            props.put("twinlock.team-count", String.valueOf(teams));
+            props.put("twinlock.duration-minutes", "600");
+            props.put("twinlock.persistence.enabled", "false");
+            // every simulated client shares 127.0.0.1
+            props.put("twinlock.rate-limit.enabled", "false");
+            props.put("logging.level.root", "WARN");
+            props.put("logging.level.com.twinlock", "WARN");
+            props.put("spring.main.banner-mode", "off");
+            // dotted options are Spring properties for the embedded server
+            opts.forEach((k, v) -> {
+                if (k.indexOf('.') > 0)
+                    props.put(k, v);
+            });
+            List<String> server = new ArrayList<>();
+            props.forEach((k, v) -> server.add("--" + k + "=" + v));
+            ctx = SpringApplication.run(TwinLockApplication.class, server.toArray(new String[0]));
+            base = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) ctx).getWebServer().getPort();
+        } else {
+            base = url.replaceAll("/$", "");
+        }
+        hist.clear();
+        for (String e : ENDPOINTS)
+            hist.put(e, new Endpoint());
+
+        try {
+            List<Node> nodes = roster();
+            if (!url.isEmpty())
+                post("/api/admin/end", null, true);
+            running = true;
+            long rampMs = intOpt("ramp", 10) * 1000L;
+            for (int i = 0; i < nodes.size(); i++) {
+                Node n = nodes.get(i);
+                timer.schedule(() -> login(n), rampMs * i / Math.max(1, nodes.size()), TimeUnit.MILLISECONDS);
+            }
+            for (int a = 0; a < intOpt("admins", 2); a++)
+                timer.schedule(new Admin()::refresh, ThreadLocalRandom.current().nextInt(3000), TimeUnit.MILLISECONDS);
+            Thread.sleep(rampMs + 2000);
+
+            // steady phase: measured from the event start
+            Map<String, Endpoint> ramp = new HashMap<>(hist);
+            for (String e : ENDPOINTS)
+                hist.put(e, new Endpoint());
+            post("/api/admin/start", null, true);
+            long gc0 = gcMillis();
+            resetPeakHeap();
+            long t0 = System.nanoTime();
+            Thread.sleep(intOpt("duration", 60) * 1000L);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            running = false;
+            for (int i = 0; i < 100 && inFlight.get() > 0; i++)
+                Thread.sleep(50);
+            return report(teams, nodes, ramp.get("login"), secs, gcMillis() - gc0);
+        } finally {
+            running = false;
+            if (ctx != null)
+                ctx.close();
+        }
+    }
+
+    private boolean report(int teams, List<Node> nodes, Endpoint login, double secs, long gcMs) {
+        double pollMean = (intOpt("poll-min", 2000) + intOpt("poll-max", 3000)) / 2.0;
+        double offered = nodes.size() * 1000.0 / pollMean;
+        long slo = intOpt("slo-ms", 250) * 1_000_000L;
+        boolean ok = true;
+
+        System.out.printf("%n== %d teams / %d nodes, %.0f s event phase, GC %d ms, peak heap %d MB%n",
+                teams, nodes.size(), secs, gcMs, peakHeap() >> 20);
+        System.out.printf("%-13s %9s %9s %9s %9s %9s %7s%n", "endpoint", "req/s", "p50 ms", "p99 ms", "p999 ms",
+                "count", "errors");
+        line("login (ramp)", login, intOpt("ramp", 10));
+        for (String e : ENDPOINTS) {
+            if (e.equals("login"))
+                continue;
+            Endpoint h = hist.get(e);
+            line(e, h, secs);
+            long[] snap = h.latency.snapshot();
+            long count = LatencyHistogram.count(snap);
+            if (count > 0 && (LatencyHistogram.quantile(snap, count, 0.99) > slo || h.errors.sum() > count / 100))
+                ok = false;
+        }
+        // a due submit takes the place of a poll, so the client loop rate is both together
+        double achieved = (hist.get("status").count() + hist.get("submit").count()) / secs;
+        if (achieved < offered * 0.9)
+            ok = false;
+        long unlocked = nodes.stream().filter(n -> n.done && n.level > 3).count();
+        System.out.printf("client loop offered %.0f/s achieved %.0f/s; %d nodes unlocked -> %s%n", offered, achieved,
+                unlocked, ok ? "OK" : "SATURATED");
+        return ok;
+    }
+
+    private static void line(String name, Endpoint h, double secs) {
+        long[] snap = h.latency.snapshot();
+        long count = LatencyHistogram.count(snap);
+        System.out.printf("%-13s %9.0f %9.2f %9.2f %9.2f %9d %7d%n", name, count / secs,
+                LatencyHistogram.quantile(snap, count, 0.50) / 1e6, LatencyHistogram.quantile(snap, count, 0.99) / 1e6,
+                LatencyHistogram.quantile(snap, count, 0.999) / 1e6, count, h.errors.sum());
+    }
+
+    /** One endpoint's figures: latencies of its successful requests, and failures. */
+    private static final class Endpoint {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        long count() {
+            return LatencyHistogram.count(latency.snapshot());
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // SIMULATED CLIENTS
+    // ════════════════════════════════════════════════════════════════
+
+    private final class Node {
+        final String teamId, nodeId, accessKey;
+        final String[] answers; // per level, "keyword-checksum"
+        String etag;
+        boolean eventActive, done;
+        int level = 1;
+        int wrongLeft; // wrong payloads still to send at this level
+        long nextSubmit;
+
+        Node(String teamId, String nodeId, String accessKey, String[] answers) {
+            this.teamId = teamId;
+            this.nodeId = nodeId;
+            this.accessKey = accessKey;
+            this.answers = answers;
+            planLevel();
+        }
+
+        void planLevel() {
+            // each wrong-rate draw adds a miss; three misses lock the node out
+            wrongLeft = 0;
+            double wrong = Double.parseDouble(opt("wrong", "0.4"));
+            while (wrongLeft < 3 && ThreadLocalRandom.current().nextDouble() < wrong)
+                wrongLeft++;
+        }
+
+        String query() {
+            return "?teamId=" + teamId + "&nodeId=" + nodeId;
+        }
+    }
+
+    private void login(Node n) {
+        String body = "{\"teamId\":\"" + n.teamId + "\",\"nodeId\":\"" + n.nodeId + "\",\"accessKey\":\""
+                + n.accessKey + "\"}";
+        send("login", HttpRequest.newBuilder(URI.create(base + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)), r -> schedulePoll(n));
+    }
+
+    private void schedulePoll(Node n) {
+        if (!running)
+            return;
+        int min = intOpt("poll-min", 2000), max = intOpt("poll-max", 3000);
+        long now = System.currentTimeMillis();
+        long think = min + ThreadLocalRandom.current().nextInt(Math.max(1, max - min));
+        // a submit that falls due before the next poll goes first
+        if (n.eventActive && !n.done && n.nextSubmit <= now + think) {
+            timer.schedule(() -> submit(n), Math.max(0, n.nextSubmit - now), TimeUnit.MILLISECONDS);
+            return;
+        }
+        timer.schedule(() -> poll(n), think, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Node n) {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(base + "/api/node/status" + n.query())).GET();
+        if (n.etag != null)
+            req.header("If-None-Match", n.etag);
+        send("status", req, r -> {
+            if (r.statusCode() == 200) {
+                n.etag = r.headers().firstValue("ETag").orElse(null);
+                JsonNode d = parse(r.body());
+                boolean active = d != null && d.path("eventActive").asBoolean();
+                if (active && !n.eventActive)
+                    n.nextSubmit = System.currentTimeMillis() + solveTime();
+                n.eventActive = active;
+                if (d != null && (d.path("nodeLocked").asBoolean() || d.path("unlocked").asBoolean()))
+                    n.done = true;
+            }
+            schedulePoll(n);
+        });
+    }
+
+    private void submit(Node n) {
+        String payload = n.wrongLeft > 0 ? "wrong-" + n.wrongLeft : n.answers[Math.min(n.level, 3) - 1];
+        String body = "{\"teamId\":\"" + n.teamId + "\",\"nodeId\":\"" + n.nodeId + "\",\"payload\":\"" + payload
+                + "\"}";
+        send("submit", HttpRequest.newBuilder(URI.create(base + "/api/node/submit"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)), r -> {
+                    JsonNode d = parse(r.body());
+                    String status = d != null ? d.path("status").asText() : "";
+                    switch (status) {
+                        case "LEVEL_UP" -> {
+                            n.level++;
+                            n.planLevel();
+                        }
+                        case "UNLOCK" -> {
+                            n.level = 4;
+                            n.done = true;
+                        }
+                        case "LOCKED" -> n.done = true;
+                        case "FAIL" -> n.wrongLeft = Math.max(0, n.wrongLeft - 1);
+                        default -> {
+                        }
+                    }
+                    n.nextSubmit = System.currentTimeMillis() + solveTime();
+                    schedulePoll(n);
+                });
+    }
+
+    private long solveTime() {
+        // exponential think time around the mean — people solve at very different speeds
+        double mean = intOpt("solve", 15000);
+        return (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    private final class Admin {
+        private final Map<String, String> etags = new HashMap<>();
+
+        void refresh() {
+            if (!running)
+                return;
+            String path = "/api/admin/status?page=0&size=100";
+            HttpRequest.Builder req = adminRequest(path).GET();
+            if (etags.get(path) != null)
+                req.header("If-None-Match", etags.get(path));
+            send("admin.status", req, r -> {
+                r.headers().firstValue("ETag").ifPresent(t -> etags.put(path, t));
+                timer.schedule(this::refresh, intOpt("admin-refresh", 3000), TimeUnit.MILLISECONDS);
+            });
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // HTTP
+    // ════════════════════════════════════════════════════════════════
+
+    private interface Handler {
+        void on(HttpResponse<String> r);
+    }
+
+    private void send(String endpoint, HttpRequest.Builder req, Handler then) {
+        if (!running)
+            return;
+        Endpoint h = hist.get(endpoint);
+        inFlight.incrementAndGet();
+        long t0 = System.nanoTime();
+        http.sendAsync(req.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((r, err) -> {
+                    inFlight.decrementAndGet();
+                    long took = System.nanoTime() - t0;
+                    if (err != null || (r.statusCode() != 200 && r.statusCode() != 304)) {
+                        h.errors.increment();
+                    } else {
+                        h.latency.record(took);
+                    }
+                    if (err == null) {
+                        try {
+                            then.on(r);
+                        } catch (RuntimeException e) {
+                            h.errors.increment();
+                        }
+                    } else if (running) {
+                        // back off and carry on like a client whose request failed
+                        timer.schedule(() -> then.on(null), 1, TimeUnit.SECONDS);
+                    }
+                });
+    }
+
+    private HttpRequest.Builder adminRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("X-Admin-Key", opt("admin-key", "TWINLOCK_ADMIN_2024"));
+    }
+
+    private void post(String path, String body, boolean admin) throws Exception {
+        HttpRequest.Builder req = admin ? adminRequest(path) : HttpRequest.newBuilder(URI.create(base + path));
+        http.send(req.POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static JsonNode parse(String body) {
+        try {
+            return body == null || body.isEmpty() ? null : JSON.readTree(body);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // ROSTER + ANSWER KEY
+    // ════════════════════════════════════════════════════════════════
+
+    private List<Node> roster() throws Exception {
+        HttpResponse<String> r = http.send(adminRequest("/api/admin/credentials").GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<Node> nodes = new ArrayList<>();
+        for (JsonNode row : JSON.readTree(r.body())) {
+            String team = row.path("teamId").asText(), node = row.path("nodeId").asText();
+            nodes.add(new Node(team, node, row.path("accessKey").asText(), answers(team, node)));
+        }
+        return nodes;
+    }
+
+    /**
+     * Per-level answers for a node, read from the puzzle table the server
+     * itself uses. The puzzle definitions are private, hence reflection —
+     * fine for a tool that ships in the same build.
+     */
+    private static String[] answers(String teamId, String nodeId) throws Exception {
+        Method resolve = TwinLockService.class.getDeclaredMethod("resolvePuzzle", String.class);
+        resolve.setAccessible(true);
+        Object puzzle = resolve.invoke(null, teamId);
+        Object[] levels = (Object[]) field(puzzle, nodeId.endsWith("01") ? "node1Levels" : "node2Levels");
+        String[] out = new String[levels.length];
+        for (int i = 0; i < levels.length; i++)
+            out[i] = field(levels[i], "keyword") + "-" + field(levels[i], "checksum");
+        return out;
+    }
+
+    private static Object field(Object o, String name) throws Exception {
+        Field f = o.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(o);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // JVM
+    // ════════════════════════════════════════════════════════════════
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            ms += Math.max(0, gc.getCollectionTime());
+        return ms;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans())
+            if (p.getType() == MemoryType.HEAP)
+                p.resetPeakUsage();
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans())
+            if (p.getType() == MemoryType.HEAP)
+                peak += p.getPeakUsage().getUsed();
+        return peak;
+    }
+}
@@ -0,0 +1,43 @@
+package com.twinlock.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one status poll as the roster grows from 50 to 10,000 teams. With
+ * the partner found through the team index it should stay flat; a scan for
+ * the partner would grow with the roster.
+ *   mvn -Pjmh compile exec:exec -Djmh.args="NodeStatusScaling"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class NodeStatusScalingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Roster extends RosterState {
+
+        @Param({ "50", "500", "5000", "10000" })
+        public int teams;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            populate(teams, Map.of());
+            goLive();
+        }
+    }
+
+    @Benchmark
+    public int nodeStatus(Roster st, Cursor c) throws IOException {
+        int i = c.next(st.nodes());
+        c.out.reset();
+        st.service.writeNodeStatus(st.teamIds[i], st.nodeIds[i], c.out);
+        return c.out.size();
+    }
+}
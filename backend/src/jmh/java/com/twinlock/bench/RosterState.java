@@ -0,0 +1,92 @@
+package com.twinlock.bench;
+
+import ch.qos.logback.classic.Logger;
+import com.twinlock.service.AuditLog;
+import com.twinlock.service.TwinLockService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One TwinLockService populated with auto-generated teams, every node logged
+ * in and the event running — the steady state of a live event. Subclasses
+ * are the JMH states; each picks its own team counts.
+ *
+ * The service is created by a bare Spring context with only TwinLockService
+ * registered (and the AuditLog it records into, disabled — plus whatever the
+ * subclass adds), so @Value config is resolved exactly as in the app but no
+ * stream or web layer listens to its events.
+ */
+public abstract class RosterState {
+
+    public TwinLockService service;
+    public String[] teamIds;
+    public String[] nodeIds;
+    public String[] accessKeys;
+
+    protected AnnotationConfigApplicationContext ctx;
+
+    protected void populate(int teams, Map<String, Object> props, Class<?>... beans) {
+        // per-request INFO lines would measure the console, not the service
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.ERROR);
+
+        ctx = context(teams, props, beans);
+        service = ctx.getBean(TwinLockService.class);
+
+        List<Map<String, String>> sheet = service.getCredentialsSheet();
+        teamIds = new String[sheet.size()];
+        nodeIds = new String[sheet.size()];
+        accessKeys = new String[sheet.size()];
+        for (int i = 0; i < sheet.size(); i++) {
+            Map<String, String> row = sheet.get(i);
+            teamIds[i] = row.get("teamId");
+            nodeIds[i] = row.get("nodeId");
+            accessKeys[i] = row.get("accessKey");
+        }
+    }
+
+    /** A refreshed context holding the service for this roster and the given extra beans. */
+    static AnnotationConfigApplicationContext context(int teams, Map<String, Object> props, Class<?>... beans) {
+        Map<String, Object> all = new HashMap<>(Map.of(
+                "twinlock.team-count", teams,
+                "twinlock.secret-salt", "BENCH_SALT",
+                "twinlock.duration-minutes", 24 * 60,
+                "twinlock.audit.enabled", false));
+        all.putAll(props);
+        AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
+        ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("bench", all));
+        ctx.register(TwinLockService.class, AuditLog.class);
+        if (beans.length > 0)
+            ctx.register(beans);
+        ctx.refresh();
+        return ctx;
+    }
+
+    /** Logs every node in and starts the event. */
+    protected void goLive() {
+        for (int i = 0; i < nodes(); i++)
+            service.login(teamIds[i], nodeIds[i], accessKeys[i]);
+        service.startEvent();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ctx.close();
+        cleanUp();
+    }
+
+    /** After the context has closed — for files the subclass created. */
+    protected void cleanUp() throws IOException {
+    }
+
+    public int nodes() {
+        return nodeIds.length;
+    }
+}
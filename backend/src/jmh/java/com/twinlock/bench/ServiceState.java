@@ -0,0 +1,19 @@
+package com.twinlock.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+
+/** The shared roster for TwinLockBenchmark, at three event sizes. */
+@State(Scope.Benchmark)
+public class ServiceState extends RosterState {
+
+    @Param({ "50", "5000", "50000" })
+    public int teams;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        populate(teams, Map.of());
+        goLive();
+    }
+}
@@ -0,0 +1,60 @@
+package com.twinlock.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of TwinLockService, single-threaded. Throughput plus sampled
+ * latency (p50/p90/p99/p999 in the JSON); run with -prof gc for allocation
+ * rate. TwinLockContendedBenchmark runs the same methods on 4 threads.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class TwinLockBenchmark {
+
+    @Benchmark
+    public Map<String, Object> login(ServiceState st, Cursor c) {
+        int i = c.next(st.nodes());
+        return st.service.login(st.teamIds[i], st.nodeIds[i], st.accessKeys[i]);
+    }
+
+    @Benchmark
+    public int nodeStatus(ServiceState st, Cursor c) throws IOException {
+        int i = c.next(st.nodes());
+        c.out.reset();
+        st.service.writeNodeStatus(st.teamIds[i], st.nodeIds[i], c.out);
+        return c.out.size();
+    }
+
+    /**
+     * A wrong answer per call; a node that locks out is reset by the admin
+     * path in the same call, so every third op on a node includes a reset.
+     */
+    @Benchmark
+    public Map<String, Object> submit(ServiceState st, Cursor c) {
+        int i = c.next(st.nodes());
+        Map<String, Object> r = st.service.submit(st.teamIds[i], st.nodeIds[i], "wrong-0");
+        if ("LOCKED".equals(r.get("status")))
+            st.service.resetNode(st.teamIds[i], st.nodeIds[i]);
+        return r;
+    }
+
+    /** First page of the dashboard, as admin.html requests it. */
+    @Benchmark
+    public Map<String, Object> adminStatus(ServiceState st) {
+        return st.service.getAdminStatus(null, 0, null, 0, 100, -1);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> credentialsSheet(ServiceState st) {
+        return st.service.getCredentialsSheet();
+    }
+}
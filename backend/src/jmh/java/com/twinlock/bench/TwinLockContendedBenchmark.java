@@ -0,0 +1,8 @@
+package com.twinlock.bench;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/** The TwinLockBenchmark operations with 4 threads sharing one service. */
+@Threads(4)
+public class TwinLockContendedBenchmark extends TwinLockBenchmark {
+}
@@ -0,0 +1,71 @@
+package com.twinlock.config;
+
+import com.twinlock.service.ClusterService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cluster-mode checks on client requests, before any routing decision.
+ *
+ * A request marked as relayed (X-Cluster-Forwarded) skips routing on the
+ * instance it reaches, so the mark is only honoured with the cluster key: one
+ * without it is refused (403) rather than run here as if this instance owned
+ * the team. And while an instance is still pulling state at startup it owns
+ * nothing yet, so client writes (every POST) get 503 + Retry-After until it
+ * has joined. The peer endpoints under /api/cluster check the key themselves.
+ *
+ * Runs ahead of the address throttle ({@link RateLimitConfig}), so a request
+ * refused here never spends its address's tokens.
+ */
+@Configuration
+public class ClusterGuardConfig {
+
+    /** Interceptor order; the throttle runs right after. */
+    static final int ORDER = 0;
+
+    @Bean
+    public WebMvcConfigurer clusterGuardInterceptor(ClusterService cluster) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+                            Object handler) throws Exception {
+                        if (!cluster.isEnabled())
+                            return true;
+                        boolean peer = cluster.isPeerRequest(request);
+                        if (request.getHeader(ClusterService.FORWARDED_HEADER) != null && !peer) {
+                            refuse(response, HttpStatus.FORBIDDEN,
+                                    "{\"error\":\"Forwarded requests need the cluster key\"}");
+                            return false;
+                        }
+                        if ("POST".equals(request.getMethod()) && !peer && !cluster.acceptsWrites()) {
+                            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                            refuse(response, HttpStatus.SERVICE_UNAVAILABLE,
+                                    "{\"status\":\"UNAVAILABLE\",\"message\":\"Instance is starting — retry shortly.\"}");
+                            return false;
+                        }
+                        return true;
+                    }
+                }).addPathPatterns("/api/**").excludePathPatterns("/api/cluster/**").order(ORDER);
+            }
+        };
+    }
+
+    private static void refuse(HttpServletResponse response, HttpStatus status, String body) throws Exception {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
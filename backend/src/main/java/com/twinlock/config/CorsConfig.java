@@ -14,23 +14,29 @@ public class CorsConfig {
     @Value("${twinlock.cors-origin:http://localhost:5173}")
     private String corsOrigin;
 
+    /** The configured origins plus the local dev ones — also checked on socket handshakes. */
+    static String[] allowedOrigins(String corsOrigin) {
+        // Split on comma to support multiple origins
+        String[] origins = corsOrigin.split(",");
+        // Always include local dev origins
+        String[] all = new String[origins.length + 2];
+        System.arraycopy(origins, 0, all, 0, origins.length);
+        all[origins.length] = "http://localhost:5173";
+        all[origins.length + 1] = "http://127.0.0.1:5173";
+        return all;
+    }
+
     @Bean
     public WebMvcConfigurer corsConfigurer() {
         return new WebMvcConfigurer() {
             @Override
             public void addCorsMappings(CorsRegistry registry) {
-                // Split on comma to support multiple origins
-                String[] origins = corsOrigin.split(",");
-                // Always include local dev origins
-                String[] all = new String[origins.length + 2];
-                System.arraycopy(origins, 0, all, 0, origins.length);
-                all[origins.length] = "http://localhost:5173";
-                all[origins.length + 1] = "http://127.0.0.1:5173";
-
+                String[] all = allowedOrigins(corsOrigin);
                 registry.addMapping("/api/**")
                         .allowedOrigins(all)
                         .allowedMethods("GET", "POST", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders("ETag") // conditional status polling
                         .allowCredentials(false);
             }
         };
@@ -0,0 +1,50 @@
+package com.twinlock.config;
+
+import com.twinlock.service.MetricsRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Times every /api request into MetricsRegistry.
+ *
+ * A filter rather than an interceptor: the start time stays a local variable
+ * instead of a request attribute, and 429s from the rate-limit interceptor
+ * are timed too. The handler is read back from the attribute Spring MVC
+ * leaves on the request once it has matched one. Runs first, so the time
+ * includes CORS and the rest of the chain; an SSE stream counts until the
+ * handler returns, not for as long as it stays open.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public FilterRegistrationBean<Filter> requestMetricsFilter(MetricsRegistry metrics) {
+        Filter filter = (req, res, chain) -> {
+            long start = System.nanoTime();
+            int status = 500;
+            try {
+                chain.doFilter(req, res);
+                status = ((HttpServletResponse) res).getStatus();
+            } finally {
+                HttpServletRequest request = (HttpServletRequest) req;
+                Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+                metrics.recordRequest(
+                        handler instanceof HandlerMethod m ? m.getMethod() : null,
+                        request.getMethod(),
+                        (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                        status, System.nanoTime() - start);
+            }
+        };
+        FilterRegistrationBean<Filter> reg = new FilterRegistrationBean<>(filter);
+        reg.addUrlPatterns("/api/*");
+        reg.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return reg;
+    }
+}
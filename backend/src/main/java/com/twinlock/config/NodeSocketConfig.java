@@ -0,0 +1,84 @@
+package com.twinlock.config;
+
+import com.twinlock.controller.NodeSocket;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.MetricsRegistry;
+import com.twinlock.service.NodeStreamService;
+import com.twinlock.service.RateLimiter;
+import com.twinlock.service.TwinLockService;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.ServletContextInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers {@link NodeSocket} on the servlet container's own WebSocket
+ * support — no Spring messaging layer in between. Each connection gets its
+ * own endpoint instance sharing the application's services.
+ *
+ * Message buffers are cut from the container's 8 KB default: client frames
+ * are a login or a submit of well under a kilobyte, and the buffers are held
+ * per open socket. Browsers send an Origin, which must be one the CORS
+ * settings allow; clients that send none (kiosk scripts) are let through,
+ * as they are over HTTP.
+ */
+@Configuration
+public class NodeSocketConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeSocketConfig.class);
+
+    private static final int MAX_TEXT_FRAME = 1024;
+    private static final int MAX_BINARY_FRAME = 128; // none expected
+
+    @Value("${twinlock.cors-origin:http://localhost:5173}")
+    private String corsOrigin;
+
+    @Bean
+    public ServletContextInitializer nodeSocketEndpoint(TwinLockService service, NodeStreamService streams,
+            RateLimiter limiter, MetricsRegistry metrics, ClusterService cluster) {
+        List<String> origins = Arrays.asList(CorsConfig.allowedOrigins(corsOrigin));
+        ServerEndpointConfig.Configurator configurator = new ServerEndpointConfig.Configurator() {
+            @Override
+            public boolean checkOrigin(String origin) {
+                return origin == null || origins.contains(origin);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getEndpointInstance(Class<T> endpointClass) {
+                return (T) new NodeSocket(service, streams, limiter, metrics, cluster);
+            }
+        };
+        // the container's WebSocket initializer may run after Spring's, so wait for the context
+        return servletContext -> servletContext.addListener(new ServletContextListener() {
+            @Override
+            public void contextInitialized(ServletContextEvent event) {
+                ServerContainer container = (ServerContainer) servletContext.getAttribute(
+                        ServerContainer.class.getName());
+                if (container == null) {
+                    log.warn("[SOCKET] No WebSocket support in this container — {} disabled.", NodeSocket.PATH);
+                    return;
+                }
+                container.setDefaultMaxTextMessageBufferSize(MAX_TEXT_FRAME);
+                container.setDefaultMaxBinaryMessageBufferSize(MAX_BINARY_FRAME);
+                try {
+                    container.addEndpoint(ServerEndpointConfig.Builder.create(NodeSocket.class, NodeSocket.PATH)
+                            .configurator(configurator)
+                            .build());
+                } catch (DeploymentException e) {
+                    throw new IllegalStateException("Could not register " + NodeSocket.PATH, e);
+                }
+            }
+        });
+    }
+}
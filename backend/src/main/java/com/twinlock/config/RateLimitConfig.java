@@ -0,0 +1,74 @@
+package com.twinlock.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.MetricsRegistry;
+import com.twinlock.service.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Per-address throttle on the guessable endpoints — login and submit. A
+ * submit batch costs its address one request; each node in it still spends
+ * from its own bucket.
+ *
+ * An interceptor rather than a servlet filter: it still runs before the
+ * request body is read or any session is looked up, but after Spring's CORS
+ * handling, so the browser can read the 429. The per-node bucket is checked
+ * by the controllers once the body names the node.
+ *
+ * Behind a reverse proxy set FORWARD_HEADERS=native, or every client shares
+ * the proxy's address. Requests relayed by another cluster instance are
+ * exempt; the per-node bucket still applies on the owner.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    public WebMvcConfigurer rateLimitInterceptor(RateLimiter limiter, MetricsRegistry metrics,
+            ClusterService cluster, ObjectMapper json) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(throttle(limiter, metrics, cluster, json, false))
+                        .addPathPatterns("/api/auth/login").order(ClusterGuardConfig.ORDER + 1);
+                registry.addInterceptor(throttle(limiter, metrics, cluster, json, true))
+                        .addPathPatterns("/api/node/submit", "/api/node/submit/batch")
+                        .order(ClusterGuardConfig.ORDER + 1);
+            }
+        };
+    }
+
+    /** One per route group, so a refusal is counted as a submit only on the submit routes. */
+    private static HandlerInterceptor throttle(RateLimiter limiter, MetricsRegistry metrics,
+            ClusterService cluster, ObjectMapper json, boolean submit) {
+        return new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+                    Object handler) throws Exception {
+                if (!"POST".equals(request.getMethod()))
+                    return true; // CORS preflight
+                if (cluster.isPeerRequest(request))
+                    return true; // relayed — the instance it arrived at throttled it
+                long wait = limiter.admitAddress(request.getRemoteAddr());
+                if (wait == 0)
+                    return true;
+                if (submit)
+                    metrics.submitted("RATE_LIMITED");
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.retryAfterSeconds(wait)));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                json.writeValue(response.getOutputStream(), RateLimiter.rejection(wait));
+                return false;
+            }
+        };
+    }
+}
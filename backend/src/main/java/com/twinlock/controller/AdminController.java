@@ -1,20 +1,42 @@
 package com.twinlock.controller;
 
+import com.twinlock.model.NodeSession;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.MetricsRegistry;
 import com.twinlock.service.TwinLockService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Admin endpoints — all require X-Admin-Key header.
  *
  * POST /api/admin/start — Start the event (opens decryption window)
  * POST /api/admin/end — End the event early
- * GET /api/admin/status — See all node sessions
+ * GET /api/admin/status — Node sessions (paged / filtered) + live totals
  * POST /api/admin/reset-node — Reset a specific node (unlock + re-enable)
+ * GET /api/admin/credentials — Credential sheet as a JSON array
+ * GET /api/admin/credentials/export — Same sheet streamed as CSV or NDJSON
+ * GET /api/admin/metrics — Prometheus text exposition (key may also be a Bearer token)
+ *
+ * In cluster mode the event-clock actions run on the coordinator instance and
+ * reset-node on the node's owner — both relayed there. Status, credentials
+ * and metrics describe the instance asked.
  */
 @RestController
 @RequestMapping("/api/admin")
@@ -23,10 +45,17 @@ public class AdminController {
     @Value("${twinlock.admin-key:TWINLOCK_ADMIN_2024}")
     private String adminKey;
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long MAX_EXTEND_SECONDS = 24 * 3600;
+
     private final TwinLockService service;
+    private final MetricsRegistry metrics;
+    private final ClusterService cluster;
 
-    public AdminController(TwinLockService service) {
+    public AdminController(TwinLockService service, MetricsRegistry metrics, ClusterService cluster) {
         this.service = service;
+        this.metrics = metrics;
+        this.cluster = cluster;
     }
 
     // ── Auth guard ────────────────────────────────────────────────
@@ -36,52 +65,129 @@ public class AdminController {
 
     // ── Start event ───────────────────────────────────────────────
     @PostMapping("/start")
-    public ResponseEntity<Map<String, Object>> startEvent(
-            @RequestHeader(value = "X-Admin-Key", required = false) String key) {
+    public ResponseEntity<?> startEvent(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            HttpServletRequest request) {
         if (unauthorized(key))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid admin key"));
+        int coordinator = cluster.coordinatorTarget(request);
+        if (coordinator >= 0)
+            return cluster.forward(coordinator, request, Map.of());
         return ResponseEntity.ok(service.startEvent());
     }
 
     // ── End event ─────────────────────────────────────────────────
     @PostMapping("/end")
-    public ResponseEntity<Map<String, Object>> endEvent(
-            @RequestHeader(value = "X-Admin-Key", required = false) String key) {
+    public ResponseEntity<?> endEvent(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            HttpServletRequest request) {
         if (unauthorized(key))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid admin key"));
+        int coordinator = cluster.coordinatorTarget(request);
+        if (coordinator >= 0)
+            return cluster.forward(coordinator, request, Map.of());
         service.endEvent();
         return ResponseEntity.ok(Map.of(
                 "status", "ENDED",
                 "message", "Event ended. All windows sealed."));
     }
 
+    // ── Pause / resume — the window's remaining time is kept ──────
+    @PostMapping("/pause")
+    public ResponseEntity<?> pauseEvent(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            HttpServletRequest request) {
+        if (unauthorized(key))
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Invalid admin key"));
+        int coordinator = cluster.coordinatorTarget(request);
+        if (coordinator >= 0)
+            return cluster.forward(coordinator, request, Map.of());
+        return ResponseEntity.ok(service.pauseEvent());
+    }
+
+    @PostMapping("/resume")
+    public ResponseEntity<?> resumeEvent(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            HttpServletRequest request) {
+        if (unauthorized(key))
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Invalid admin key"));
+        int coordinator = cluster.coordinatorTarget(request);
+        if (coordinator >= 0)
+            return cluster.forward(coordinator, request, Map.of());
+        return ResponseEntity.ok(service.resumeEvent());
+    }
+
+    // ── Extend — body {"minutes": n} or {"seconds": n} ───────────
+    @PostMapping("/extend")
+    public ResponseEntity<?> extendEvent(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            @RequestBody Map<String, Integer> body,
+            HttpServletRequest request) {
+        if (unauthorized(key))
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Invalid admin key"));
+        int coordinator = cluster.coordinatorTarget(request);
+        if (coordinator >= 0)
+            return cluster.forward(coordinator, request, body);
+        long seconds = body.getOrDefault("minutes", 0) * 60L + body.getOrDefault("seconds", 0);
+        if (seconds <= 0 || seconds > MAX_EXTEND_SECONDS)
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Extend by 1 s to " + MAX_EXTEND_SECONDS / 3600 + " h"));
+        return ResponseEntity.ok(service.extendEvent(seconds));
+    }
+
     // ── Status dashboard ──────────────────────────────────────────
+    // ?team=&level=&state=idle|active|locked|unlocked&page=&size= — or
+    // ?since=<version> for just the rows changed after a previous read, and
+    // those that left the filter under "removed"
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getStatus(
-            @RequestHeader(value = "X-Admin-Key", required = false) String key) {
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            @RequestParam(required = false) String team,
+            @RequestParam(defaultValue = "0") int level,
+            @RequestParam(required = false) String state,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(defaultValue = "-1") long since,
+            ServletWebRequest request) {
         if (unauthorized(key))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid admin key"));
-        return ResponseEntity.ok(service.getAdminStatus());
+        String st = state != null && !state.isBlank() ? state.trim().toLowerCase() : null;
+        int pg = Math.max(0, page);
+        int sz = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        if (request.checkNotModified(service.adminStatusETag(team, level, st, pg, sz, since)))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                .body(service.getAdminStatus(team, level, st, pg, sz, since));
     }
 
     // ── Reset a node ──────────────────────────────────────────────
     @PostMapping("/reset-node")
-    public ResponseEntity<Map<String, Object>> resetNode(
+    public ResponseEntity<?> resetNode(
             @RequestHeader(value = "X-Admin-Key", required = false) String key,
-            @RequestBody Map<String, String> body) {
+            @RequestBody Map<String, String> body,
+            HttpServletRequest request) {
         if (unauthorized(key))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid admin key"));
-        String teamId = body.getOrDefault("teamId", "").toUpperCase().trim();
-        String nodeId = body.getOrDefault("nodeId", "").toUpperCase().trim();
-        service.resetNode(teamId, nodeId);
+        String teamId = body.get("teamId");
+        String nodeId = body.get("nodeId");
+        int owner = cluster.writeTarget(service.resolve(teamId, nodeId), request);
+        if (owner >= 0)
+            return cluster.forward(owner, request, body);
+        if (!service.resetNode(teamId, nodeId))
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Unknown node"));
+        NodeSession s = service.getSession(teamId, nodeId);
         return ResponseEntity.ok(Map.of(
                 "status", "RESET",
-                "teamId", teamId,
-                "nodeId", nodeId));
+                "teamId", s.getTeamId(),
+                "nodeId", s.getNodeId()));
     }
 
     // ── Credential sheet (all teams + keys) ──────────────────────
@@ -93,4 +199,65 @@ public class AdminController {
                     .body(Map.of("error", "Invalid admin key"));
         return ResponseEntity.ok(service.getCredentialsSheet());
     }
+
+    // ── Credential export (streamed) ──────────────────────────────
+    // ?format=csv|ndjson — rows go out in roster order as they are written,
+    // gzip-encoded when the client accepts it
+    @GetMapping("/credentials/export")
+    public void exportCredentials(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        if (unauthorized(key)) {
+            writeError(response, HttpStatus.UNAUTHORIZED, "Invalid admin key");
+            return;
+        }
+        boolean ndjson = format.trim().equalsIgnoreCase("ndjson");
+        if (!ndjson && !format.trim().equalsIgnoreCase("csv")) {
+            writeError(response, HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+            return;
+        }
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(ndjson ? "credentials.ndjson" : "credentials.csv").build().toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        OutputStream out = response.getOutputStream();
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, 1 << 13);
+        }
+        try (OutputStream sink = new BufferedOutputStream(out, 1 << 13)) {
+            if (ndjson)
+                service.writeCredentialsNdjson(sink);
+            else
+                service.writeCredentialsCsv(sink);
+        }
+    }
+
+    // ── Metrics (Prometheus scrape) ───────────────────────────────
+    // Prometheus sends a key configured as bearer_token as "Authorization: Bearer <key>"
+    @GetMapping("/metrics")
+    public void metrics(
+            @RequestHeader(value = "X-Admin-Key", required = false) String key,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            HttpServletResponse response) throws IOException {
+        if (key == null && authorization != null && authorization.startsWith("Bearer "))
+            key = authorization.substring(7).trim();
+        if (unauthorized(key)) {
+            writeError(response, HttpStatus.UNAUTHORIZED, "Invalid admin key");
+            return;
+        }
+        response.setContentType("text/plain;version=0.0.4;charset=UTF-8");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        metrics.writePrometheus(response.getOutputStream());
+    }
+
+    private static void writeError(HttpServletResponse response, HttpStatus status, String error)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(("{\"error\":\"" + error + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
 }
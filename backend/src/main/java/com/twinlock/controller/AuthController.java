@@ -1,7 +1,13 @@
 package com.twinlock.controller;
 
 import com.twinlock.model.LoginRequest;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.RateLimiter;
 import com.twinlock.service.TwinLockService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -11,25 +17,43 @@ import java.util.Map;
 public class AuthController {
 
     private final TwinLockService service;
+    private final RateLimiter limiter;
+    private final ClusterService cluster;
 
-    public AuthController(TwinLockService service) {
+    public AuthController(TwinLockService service, RateLimiter limiter, ClusterService cluster) {
         this.service = service;
+        this.limiter = limiter;
+        this.cluster = cluster;
     }
 
-    /** POST /api/auth/login — validate team/node credentials */
+    /**
+     * POST /api/auth/login — validate team/node credentials; 429 when the node is throttled.
+     * In cluster mode, relayed to the instance that owns the team.
+     */
     @PostMapping("/login")
-    public Map<String, Object> login(@RequestBody LoginRequest req) {
-        String teamId = req.getTeamId() != null ? req.getTeamId().toUpperCase().trim() : "";
-        String nodeId = req.getNodeId() != null ? req.getNodeId().toUpperCase().trim() : "";
+    public ResponseEntity<?> login(@RequestBody LoginRequest req, HttpServletRequest request) {
+        int owner = cluster.writeTarget(service.resolve(req.getTeamId(), req.getNodeId()), request);
+        if (owner >= 0)
+            return cluster.forward(owner, request, req);
+        long wait = limiter.admitNode(req.getTeamId(), req.getNodeId());
+        if (wait > 0)
+            return tooManyRequests(wait);
         String accessKey = req.getAccessKey() != null ? req.getAccessKey().trim() : "";
-        return service.login(teamId, nodeId, accessKey);
+        return ResponseEntity.ok(service.login(req.getTeamId(), req.getNodeId(), accessKey));
     }
 
     /** POST /api/auth/restore — restore session after page refresh */
     @PostMapping("/restore")
-    public Map<String, Object> restore(@RequestBody Map<String, String> body) {
-        String teamId = body.getOrDefault("teamId", "").toUpperCase().trim();
-        String nodeId = body.getOrDefault("nodeId", "").toUpperCase().trim();
-        return service.restoreSession(teamId, nodeId);
+    public ResponseEntity<?> restore(@RequestBody Map<String, String> body, HttpServletRequest request) {
+        int holder = cluster.readTarget(service.resolve(body.get("teamId"), body.get("nodeId")), request);
+        if (holder >= 0)
+            return cluster.forward(holder, request, body);
+        return ResponseEntity.ok(service.restoreSession(body.get("teamId"), body.get("nodeId")));
+    }
+
+    private static ResponseEntity<Map<String, Object>> tooManyRequests(long waitNanos) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.retryAfterSeconds(waitNanos)))
+                .body(RateLimiter.rejection(waitNanos));
     }
 }
@@ -0,0 +1,66 @@
+package com.twinlock.controller;
+
+import com.twinlock.service.ClusterService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Instance-to-instance endpoints — all require the X-Cluster-Key header, and
+ * all answer 404 unless twinlock.cluster.enabled is set.
+ *
+ * GET /api/cluster/ping — Readiness and roster fingerprint, for heartbeats
+ * GET /api/cluster/sync?peer=N — Words peer N should hold, pulled as it starts
+ * POST /api/cluster/replicate — Words (and the clock) pushed by an owner
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final ClusterService cluster;
+
+    public ClusterController(ClusterService cluster) {
+        this.cluster = cluster;
+    }
+
+    // ── Auth guard ────────────────────────────────────────────────
+    private ResponseEntity<Object> refused(String key) {
+        if (!cluster.isEnabled())
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (!cluster.authorized(key))
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid cluster key"));
+        return null;
+    }
+
+    @GetMapping("/ping")
+    public ResponseEntity<?> ping(
+            @RequestHeader(value = ClusterService.KEY_HEADER, required = false) String key) {
+        ResponseEntity<Object> refused = refused(key);
+        return refused != null ? refused : ResponseEntity.ok(cluster.ping());
+    }
+
+    @GetMapping("/sync")
+    public ResponseEntity<?> sync(
+            @RequestHeader(value = ClusterService.KEY_HEADER, required = false) String key,
+            @RequestParam int peer) throws IOException {
+        ResponseEntity<Object> refused = refused(key);
+        return refused != null ? refused
+                : ResponseEntity.ok().contentType(ClusterService.WIRE_TYPE).body(cluster.syncFor(peer));
+    }
+
+    @PostMapping("/replicate")
+    public ResponseEntity<?> replicate(
+            @RequestHeader(value = ClusterService.KEY_HEADER, required = false) String key,
+            @RequestBody byte[] body) throws IOException {
+        ResponseEntity<Object> refused = refused(key);
+        if (refused != null)
+            return refused;
+        int applied = cluster.apply(body);
+        if (applied < 0)
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Roster differs"));
+        return ResponseEntity.ok(Map.of("applied", applied));
+    }
+}
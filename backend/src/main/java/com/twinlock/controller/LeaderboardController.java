@@ -0,0 +1,95 @@
+package com.twinlock.controller;
+
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.TwinLockService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * GET /api/leaderboard?limit=10 — the best teams by levels cleared (both nodes),
+ * ties going to whoever got there first. No key needed: it shows team IDs and
+ * counts only, and a read costs O(limit) — fine for a projector to poll.
+ * Carries an ETag; a matching If-None-Match gets 304 with no body.
+ *
+ * In cluster mode each instance ranks the teams it owns; the one asked merges
+ * every live instance's top entries, flagging "partial" if one did not answer.
+ * The merged board is kept for MERGED_TTL_MILLIS per limit and shared by
+ * every poller, so the peers see one gather a second however many projectors
+ * poll; while one thread refreshes it the others get the previous copy. Its
+ * ETag digests the content (TwinLockService.mergedLeaderboardETag).
+ */
+@RestController
+@RequestMapping("/api/leaderboard")
+public class LeaderboardController {
+
+    private static final int MAX_LIMIT = 100;
+    private static final long MERGED_TTL_MILLIS = 1000;
+
+    /** A merged cluster board as of {@code takenAt} (nanoTime). */
+    private record Merged(long takenAt, Map<String, Object> body, String etag) {
+        boolean fresh() {
+            return System.nanoTime() - takenAt < TimeUnit.MILLISECONDS.toNanos(MERGED_TTL_MILLIS);
+        }
+    }
+
+    private final TwinLockService service;
+    private final ClusterService cluster;
+    private final ConcurrentHashMap<Integer, Merged> merged = new ConcurrentHashMap<>(); // by limit
+    private final ReentrantLock gathering = new ReentrantLock();
+
+    public LeaderboardController(TwinLockService service, ClusterService cluster) {
+        this.service = service;
+        this.cluster = cluster;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> leaderboard(
+            @RequestParam(defaultValue = "10") int limit,
+            ServletWebRequest web) {
+        HttpServletRequest request = web.getRequest();
+        int k = Math.min(Math.max(1, limit), MAX_LIMIT);
+        if (cluster.isEnabled()) {
+            if (cluster.isRelayed(request))
+                return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                        .body(service.getLeaderboard(k, true));
+            Merged m = merged(k, request);
+            if (web.checkNotModified(m.etag()))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(m.body());
+        }
+        if (web.checkNotModified(service.leaderboardETag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(service.getLeaderboard(k, false));
+    }
+
+    private Merged merged(int k, HttpServletRequest request) {
+        Merged m = merged.get(k);
+        if (m != null && (m.fresh() || !gathering.tryLock()))
+            return m; // fresh, or someone is refreshing it
+        if (m == null)
+            gathering.lock();
+        try {
+            m = merged.get(k);
+            if (m != null && m.fresh())
+                return m;
+            List<Map<String, Object>> parts = cluster.gather(request);
+            parts.add(service.getLeaderboard(k, true));
+            Map<String, Object> body = service.mergeLeaderboards(parts, k);
+            m = new Merged(System.nanoTime(), body, TwinLockService.mergedLeaderboardETag(body));
+            merged.put(k, m);
+            return m;
+        } finally {
+            gathering.unlock();
+        }
+    }
+}
@@ -1,19 +1,47 @@
 package com.twinlock.controller;
 
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.twinlock.model.SubmitRequest;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.MetricsRegistry;
+import com.twinlock.service.NodeStreamService;
+import com.twinlock.service.RateLimiter;
 import com.twinlock.service.TwinLockService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Map;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/node")
 public class NodeController {
 
+    private static final int MAX_BATCH = 64;
+
     private final TwinLockService service;
+    private final NodeStreamService streams;
+    private final RateLimiter limiter;
+    private final MetricsRegistry metrics;
+    private final ClusterService cluster;
 
-    public NodeController(TwinLockService service) {
+    public NodeController(TwinLockService service, NodeStreamService streams, RateLimiter limiter,
+            MetricsRegistry metrics, ClusterService cluster) {
         this.service = service;
+        this.streams = streams;
+        this.limiter = limiter;
+        this.metrics = metrics;
+        this.cluster = cluster;
     }
 
     /**
@@ -21,26 +49,217 @@ public class NodeController {
      * Polled every 2-3 seconds by the terminal client.
      * Returns: eventActive, cipher (if active), timeRemaining, attemptsRemaining,
      * nodeLocked
+     * Written straight to the response stream — see TwinLockService.writeNodeStatus.
+     * Carries an ETag; a matching If-None-Match gets 304 with no body.
+     * In cluster mode, proxied to the owner if this instance holds no copy of the team.
      */
     @GetMapping("/status")
-    public Map<String, Object> status(
+    public void status(
+            @RequestParam String teamId,
+            @RequestParam String nodeId,
+            ServletWebRequest request,
+            HttpServletResponse response) throws IOException {
+        int slot = service.resolve(teamId, nodeId);
+        int holder = cluster.readTarget(slot, request.getRequest());
+        if (holder >= 0) {
+            relay(cluster.forward(holder, request.getRequest(), null), response);
+            return;
+        }
+        metrics.polled(slot);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        if (request.checkNotModified(service.nodeStatusETag(slot)))
+            return;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        service.writeNodeStatus(slot, response.getOutputStream());
+    }
+
+    /**
+     * GET /api/node/status/batch?teamId=ALPHA&nodeId=SYS-01&teamId=BRAVO&nodeId=SYS-02
+     * For a kiosk host driving several terminals: the teamId/nodeId pairs are
+     * matched up in order (at most 64) and the answer is a JSON array of their
+     * /status bodies in the same order, written from one clock reading.
+     * Carries an ETag over the whole batch, as /status does for one node.
+     * In cluster mode, entries this instance holds no copy of are fetched from
+     * their owners, one sub-batch per owner; an unreachable owner's entries
+     * answer { status: UNAVAILABLE }.
+     */
+    @GetMapping("/status/batch")
+    public ResponseEntity<?> statusBatch(
+            @RequestParam List<String> teamId,
+            @RequestParam List<String> nodeId,
+            ServletWebRequest request,
+            HttpServletResponse response) throws IOException {
+        ResponseEntity<?> refused = refusedBatch(teamId.size(), teamId.size() == nodeId.size());
+        if (refused != null)
+            return refused;
+        int n = teamId.size();
+        int[] slots = new int[n];
+        int[] holders = new int[n];
+        boolean local = true;
+        for (int i = 0; i < n; i++) {
+            slots[i] = service.resolve(teamId.get(i), nodeId.get(i));
+            holders[i] = cluster.readTarget(slots[i], request.getRequest());
+            if (holders[i] >= 0)
+                local = false;
+            else
+                metrics.polled(slots[i]);
+        }
+        if (!local) {
+            Object[] results = new Object[n];
+            for (int i = 0; i < n; i++)
+                if (holders[i] < 0)
+                    results[i] = new RawValue(new String(service.nodeStatusJson(slots[i]), StandardCharsets.UTF_8));
+            byPeer(holders).forEach((peer, entries) -> {
+                StringBuilder query = new StringBuilder();
+                for (int i : entries)
+                    query.append(query.length() > 0 ? "&" : "")
+                            .append("teamId=").append(URLEncoder.encode(teamId.get(i), StandardCharsets.UTF_8))
+                            .append("&nodeId=").append(URLEncoder.encode(nodeId.get(i), StandardCharsets.UTF_8));
+                fill(results, entries, cluster.forwardBatch(peer, request.getRequest(), query.toString(), null,
+                        entries.size()));
+            });
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(Arrays.asList(results));
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        if (request.checkNotModified(service.nodeStatusesETag(slots)))
+            return null;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        service.writeNodeStatuses(slots, response.getOutputStream());
+        return null;
+    }
+
+    /**
+     * GET /api/node/stream?teamId=ALPHA&nodeId=SYS-01
+     * Server-Sent Events replacement for polling /status.
+     * Events: "status" (same body as /status) on every change to this node,
+     * its partner or the event state; "tick" { timeRemainingSeconds } once per
+     * second while the event is active.
+     * In cluster mode an instance holding no copy of the team redirects (307)
+     * to the owner, since only holders see the team's changes.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
             @RequestParam String teamId,
-            @RequestParam String nodeId) {
-        return service.getNodeStatus(
-                teamId.toUpperCase().trim(),
-                nodeId.toUpperCase().trim());
+            @RequestParam String nodeId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        int holder = cluster.readTarget(service.resolve(teamId, nodeId), request);
+        if (holder >= 0) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION,
+                    cluster.peerUrl(holder) + request.getRequestURI() + "?" + request.getQueryString());
+            return null;
+        }
+        return streams.open(teamId, nodeId);
     }
 
     /**
      * POST /api/node/submit
      * Body: { teamId, nodeId, payload } payload = "innovation-133"
      * Returns: { status: UNLOCK|FAIL|LOCKED, formLink?, attemptsRemaining? }
+     * or 429 { status: RATE_LIMITED, retryAfterSeconds } — not counted as an attempt
+     * In cluster mode, relayed to the instance that owns the team.
      */
     @PostMapping("/submit")
-    public Map<String, Object> submit(@RequestBody SubmitRequest req) {
-        String teamId = req.getTeamId() != null ? req.getTeamId().toUpperCase().trim() : "";
-        String nodeId = req.getNodeId() != null ? req.getNodeId().toUpperCase().trim() : "";
+    public ResponseEntity<?> submit(@RequestBody SubmitRequest req, HttpServletRequest request) {
+        int owner = cluster.writeTarget(service.resolve(req.getTeamId(), req.getNodeId()), request);
+        if (owner >= 0)
+            return cluster.forward(owner, request, req);
+        long wait = limiter.admitNode(req.getTeamId(), req.getNodeId());
+        if (wait > 0) {
+            metrics.submitted("RATE_LIMITED");
+            return tooManyRequests(wait);
+        }
         String payload = req.getPayload() != null ? req.getPayload().trim() : "";
-        return service.submit(teamId, nodeId, payload);
+        Map<String, Object> result = service.submit(req.getTeamId(), req.getNodeId(), payload);
+        metrics.submitted(result.get("status"));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * POST /api/node/submit/batch
+     * Body: [ { teamId, nodeId, payload }, ... ] — at most 64, judged in order
+     * Returns: a JSON array of the /submit answers in the same order. A node
+     * over its rate limit gets { status: RATE_LIMITED, retryAfterSeconds } in
+     * its place — not counted as an attempt — and the rest still go through.
+     * The address throttle counts the whole batch once.
+     * In cluster mode, entries are relayed to their owners, one sub-batch per
+     * owner; an unreachable owner's entries answer { status: UNAVAILABLE }.
+     */
+    @PostMapping("/submit/batch")
+    public ResponseEntity<?> submitBatch(@RequestBody List<SubmitRequest> reqs, HttpServletRequest request) {
+        ResponseEntity<?> refused = refusedBatch(reqs.size(), !reqs.contains(null));
+        if (refused != null)
+            return refused;
+        int n = reqs.size();
+        Object[] results = new Object[n];
+        int[] owners = new int[n];
+        int[] slots = new int[n];
+        String[] payloads = new String[n];
+        int pending = 0;
+        for (int i = 0; i < n; i++) {
+            SubmitRequest req = reqs.get(i);
+            int slot = service.resolve(req.getTeamId(), req.getNodeId());
+            owners[i] = cluster.writeTarget(slot, request);
+            if (owners[i] >= 0)
+                continue;
+            long wait = limiter.admitSlot(slot);
+            if (wait > 0) {
+                metrics.submitted("RATE_LIMITED");
+                results[i] = RateLimiter.rejection(wait);
+                continue;
+            }
+            slots[pending] = slot;
+            payloads[pending++] = req.getPayload() != null ? req.getPayload().trim() : "";
+        }
+        List<Map<String, Object>> judged = service.submitAll(Arrays.copyOf(slots, pending),
+                Arrays.copyOf(payloads, pending));
+        for (int i = 0, k = 0; i < n; i++) {
+            if (owners[i] >= 0 || results[i] != null)
+                continue;
+            metrics.submitted(judged.get(k).get("status"));
+            results[i] = judged.get(k++);
+        }
+        byPeer(owners).forEach((peer, entries) -> {
+            List<SubmitRequest> slice = new ArrayList<>(entries.size());
+            for (int i : entries)
+                slice.add(reqs.get(i));
+            fill(results, entries, cluster.forwardBatch(peer, request, null, slice, entries.size()));
+        });
+        return ResponseEntity.ok(Arrays.asList(results));
+    }
+
+    private static ResponseEntity<?> refusedBatch(int size, boolean wellFormed) {
+        if (size == 0 || size > MAX_BATCH || !wellFormed)
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "A batch is 1 to " + MAX_BATCH + " complete teamId/nodeId entries"));
+        return null;
+    }
+
+    /** Batch positions by the peer they must go to, skipping the ones handled here (-1). */
+    private static Map<Integer, List<Integer>> byPeer(int[] targets) {
+        Map<Integer, List<Integer>> out = new TreeMap<>();
+        for (int i = 0; i < targets.length; i++)
+            if (targets[i] >= 0)
+                out.computeIfAbsent(targets[i], p -> new ArrayList<>()).add(i);
+        return out;
+    }
+
+    private static void fill(Object[] results, List<Integer> entries, List<Object> answers) {
+        for (int j = 0; j < entries.size(); j++)
+            results[entries.get(j)] = answers != null ? answers.get(j) : ClusterService.unavailable();
+    }
+
+    private static void relay(ResponseEntity<byte[]> answer, HttpServletResponse response) throws IOException {
+        response.setStatus(answer.getStatusCode().value());
+        answer.getHeaders().forEach((name, values) -> values.forEach(v -> response.addHeader(name, v)));
+        if (answer.getBody() != null)
+            response.getOutputStream().write(answer.getBody());
+    }
+
+    private static ResponseEntity<Map<String, Object>> tooManyRequests(long waitNanos) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.retryAfterSeconds(waitNanos)))
+                .body(RateLimiter.rejection(waitNanos));
     }
 }
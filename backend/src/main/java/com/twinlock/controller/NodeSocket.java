@@ -0,0 +1,388 @@
+package com.twinlock.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.twinlock.service.ClusterService;
+import com.twinlock.service.MetricsRegistry;
+import com.twinlock.service.NodeStreamService;
+import com.twinlock.service.RateLimiter;
+import com.twinlock.service.TwinLockService;
+import jakarta.websocket.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * WS /api/node/socket — one connection per terminal carrying both directions:
+ * the node's login and submits up, its status changes down. One instance per
+ * connection, registered by NodeSocketConfig.
+ *
+ * Client frames are JSON text; an "id" is echoed back on the reply:
+ *   { op: "login", teamId, nodeId, accessKey }  as POST /api/auth/login
+ *   { op: "restore", teamId, nodeId }           as POST /api/auth/restore (page refresh)
+ *   { op: "submit", payload }                   as POST /api/node/submit, for the bound node
+ * Replies are { op, id?, ...the HTTP body }. A successful login or restore
+ * binds the socket to that node for good; from then on the server pushes
+ *   { op: "status", full: true, ... }   the /status body, first time round
+ *   { op: "status", ...changed fields, unset?: [names] }   afterwards
+ *   { op: "tick", timeRemainingSeconds }   each second while the window is open
+ *   { op: "ping" }                         every 15 s while it is closed
+ * on every change to the node, its partner or the event state. Login and
+ * submit spend from the node's rate-limit bucket as over HTTP; five failed
+ * logins close the socket.
+ *
+ * In cluster mode a socket lives on its team's owner: any other instance
+ * answers { op: "redirect", url } and the client reconnects there.
+ *
+ * Pushes never block the push thread. Each socket has at most one frame in
+ * flight; while one is, the newest status and tick wait in a one-deep slot
+ * each, overwriting older ones, so a slow client gets fewer, fresher frames
+ * instead of a growing queue. Only replies queue, and a client that lets
+ * them pile up is disconnected.
+ */
+public class NodeSocket extends Endpoint {
+
+    public static final String PATH = "/api/node/socket";
+
+    private static final Logger log = LoggerFactory.getLogger(NodeSocket.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final int MAX_FAILED_LOGINS = 5;
+    private static final int MAX_QUEUED_REPLIES = 32;
+    private static final long SEND_TIMEOUT_MILLIS = 10_000;
+    private static final String PING = "{\"op\":\"ping\"}";
+
+    // the hub hands every channel the same tick bytes, so one frame serves all sockets
+    private record TickFrame(byte[] json, String frame) {
+    }
+
+    private static volatile TickFrame lastTick;
+
+    private final TwinLockService service;
+    private final NodeStreamService streams;
+    private final RateLimiter limiter;
+    private final MetricsRegistry metrics;
+    private final ClusterService cluster;
+
+    private Session session;
+    private Sender sender;
+    private volatile int slot = -1; // bound node; set once, by the message thread
+    private int failedLogins; // message thread only
+
+    public NodeSocket(TwinLockService service, NodeStreamService streams, RateLimiter limiter,
+            MetricsRegistry metrics, ClusterService cluster) {
+        this.service = service;
+        this.streams = streams;
+        this.limiter = limiter;
+        this.metrics = metrics;
+        this.cluster = cluster;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // LIFECYCLE
+    // ════════════════════════════════════════════════════════════════
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        this.session = session;
+        this.sender = new Sender();
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MILLIS);
+        session.addMessageHandler(String.class, this::onText);
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason reason) {
+        int bound = slot;
+        if (bound >= 0)
+            streams.detach(bound, sender);
+    }
+
+    @Override
+    public void onError(Session session, Throwable e) {
+        log.debug("[SOCKET] {}: {}", session.getId(), e.getMessage());
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // CLIENT FRAMES — one at a time, per the WebSocket API
+    // ════════════════════════════════════════════════════════════════
+
+    private void onText(String text) {
+        JsonNode msg;
+        try {
+            msg = JSON.readTree(text);
+        } catch (JsonProcessingException e) {
+            msg = null;
+        }
+        if (msg == null || !msg.isObject()) {
+            reply(null, "error", Map.of("error", "Frames are JSON objects"));
+            return;
+        }
+        JsonNode id = msg.get("id");
+        String op = msg.path("op").asText();
+        switch (op) {
+            case "login" -> login(id, msg);
+            case "restore" -> restore(id, msg);
+            case "submit" -> submit(id, msg);
+            default -> reply(id, "error", Map.of("error", "Unknown op: " + op));
+        }
+    }
+
+    private void login(JsonNode id, JsonNode msg) {
+        String teamId = text(msg, "teamId");
+        String nodeId = text(msg, "nodeId");
+        int target = service.resolve(teamId, nodeId);
+        if (redirected(id, "login", target) || rebinding(id, "login", target))
+            return;
+        long wait = limiter.admitSlot(target);
+        if (wait > 0) {
+            reply(id, "login", RateLimiter.rejection(wait));
+            return;
+        }
+        Map<String, Object> result = service.login(teamId, nodeId, text(msg, "accessKey").trim());
+        reply(id, "login", result);
+        if ("OK".equals(result.get("status")))
+            bind(target);
+        else if (++failedLogins >= MAX_FAILED_LOGINS)
+            close(CloseReason.CloseCodes.VIOLATED_POLICY, "Too many failed logins");
+    }
+
+    private void restore(JsonNode id, JsonNode msg) {
+        String teamId = text(msg, "teamId");
+        String nodeId = text(msg, "nodeId");
+        int target = service.resolve(teamId, nodeId);
+        if (redirected(id, "restore", target) || rebinding(id, "restore", target))
+            return;
+        Map<String, Object> result = service.restoreSession(teamId, nodeId);
+        reply(id, "restore", result);
+        if ("OK".equals(result.get("status")))
+            bind(target);
+    }
+
+    private void submit(JsonNode id, JsonNode msg) {
+        int bound = slot;
+        if (redirected(id, "submit", bound))
+            return; // the team changed hands since this socket bound
+        long wait = limiter.admitSlot(bound);
+        if (wait > 0) {
+            metrics.submitted("RATE_LIMITED");
+            reply(id, "submit", RateLimiter.rejection(wait));
+            return;
+        }
+        Map<String, Object> result = service.submit(bound, text(msg, "payload").trim());
+        metrics.submitted(result.get("status"));
+        reply(id, "submit", result);
+    }
+
+    /**
+     * Sends the client to the team's owner if that is another instance, or
+     * turns it away while this one is still joining the cluster.
+     */
+    private boolean redirected(JsonNode id, String op, int target) {
+        if (!cluster.acceptsWrites()) {
+            reply(id, op, ClusterService.unavailable());
+            return true;
+        }
+        int owner = cluster.ownerTarget(target);
+        if (owner < 0)
+            return false;
+        if (slot >= 0)
+            streams.detach(slot, sender);
+        reply(id, "redirect", Map.of("url", cluster.peerUrl(owner) + PATH));
+        return true;
+    }
+
+    private boolean rebinding(JsonNode id, String op, int target) {
+        if (slot < 0 || slot == target)
+            return false;
+        reply(id, op, Map.of("status", "FAIL", "message", "This connection belongs to another node"));
+        return true;
+    }
+
+    private void bind(int target) {
+        if (slot == target)
+            return; // signing in again on the same node
+        slot = target;
+        streams.attach(target, sender);
+    }
+
+    private static String text(JsonNode msg, String field) {
+        JsonNode v = msg.get(field);
+        return v != null && v.isTextual() ? v.asText() : "";
+    }
+
+    private void reply(JsonNode id, String op, Map<String, Object> body) {
+        ObjectNode frame = JSON.createObjectNode().put("op", op);
+        if (id != null)
+            frame.set("id", id);
+        frame.setAll((ObjectNode) JSON.valueToTree(body));
+        sender.reply(frame.toString());
+    }
+
+    private void close(CloseReason.CloseCode code, String why) {
+        try {
+            session.close(new CloseReason(code, why));
+        } catch (IOException e) {
+            log.debug("[SOCKET] Close failed on {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // SENDING — one frame in flight, the rest coalesced
+    // ════════════════════════════════════════════════════════════════
+
+    private final class Sender implements NodeStreamService.Channel, SendHandler {
+        final Queue<String> replies = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queuedReplies = new AtomicInteger();
+        final AtomicReference<byte[]> pendingStatus = new AtomicReference<>();
+        final AtomicReference<byte[]> pendingTick = new AtomicReference<>();
+        final AtomicBoolean pendingPing = new AtomicBoolean();
+        final AtomicBoolean sending = new AtomicBoolean();
+        ObjectNode lastSent; // status the client holds; only touched while holding 'sending'
+
+        // ── Channel (push thread) ──────────────────────────────────
+        @Override
+        public void status(byte[] json) throws IOException {
+            requireOpen();
+            pendingStatus.set(json);
+            drain();
+        }
+
+        @Override
+        public void tick(long timeRemainingSeconds, byte[] json) throws IOException {
+            requireOpen();
+            pendingTick.set(json);
+            drain();
+        }
+
+        @Override
+        public void ping() throws IOException {
+            requireOpen();
+            pendingPing.set(true);
+            drain();
+        }
+
+        private void requireOpen() throws IOException {
+            if (!session.isOpen())
+                throw new IOException("socket closed");
+        }
+
+        // ── Replies (message thread) ───────────────────────────────
+        void reply(String frame) {
+            if (queuedReplies.incrementAndGet() > MAX_QUEUED_REPLIES) {
+                close(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Not reading replies");
+                return;
+            }
+            replies.add(frame);
+            drain();
+        }
+
+        // ── Drain ──────────────────────────────────────────────────
+        void drain() {
+            while (sending.compareAndSet(false, true)) {
+                String frame = next();
+                if (frame != null) {
+                    try {
+                        session.getAsyncRemote().sendText(frame, this);
+                    } catch (IllegalStateException e) {
+                        sending.set(false); // closed under us
+                    }
+                    return;
+                }
+                sending.set(false);
+                if (!pending())
+                    return;
+                // something arrived between next() and the release — go round again
+            }
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                log.debug("[SOCKET] Send failed on {}: {}", session.getId(), result.getException().getMessage());
+                close(CloseReason.CloseCodes.CLOSED_ABNORMALLY, "Send failed");
+                return; // 'sending' stays set: nothing more goes out
+            }
+            sending.set(false);
+            drain();
+        }
+
+        private boolean pending() {
+            return !replies.isEmpty() || pendingStatus.get() != null || pendingTick.get() != null || pendingPing.get();
+        }
+
+        /** Highest-priority frame ready to go, or null. */
+        private String next() {
+            String reply = replies.poll();
+            if (reply != null) {
+                queuedReplies.decrementAndGet();
+                return reply;
+            }
+            byte[] status = pendingStatus.getAndSet(null);
+            if (status != null) {
+                String delta = delta(status);
+                if (delta != null)
+                    return delta;
+            }
+            byte[] tick = pendingTick.getAndSet(null);
+            if (tick != null)
+                return tickFrame(tick);
+            if (pendingPing.getAndSet(false))
+                return PING;
+            return null;
+        }
+
+        private static String tickFrame(byte[] json) {
+            TickFrame t = lastTick;
+            if (t == null || t.json() != json) {
+                // {"timeRemainingSeconds":n} → {"op":"tick","timeRemainingSeconds":n}
+                t = new TickFrame(json, "{\"op\":\"tick\"," + new String(json, 1, json.length - 1,
+                        StandardCharsets.US_ASCII));
+                lastTick = t;
+            }
+            return t.frame();
+        }
+
+        /** The status as a frame against what the client holds; null if nothing changed. */
+        private String delta(byte[] json) {
+            ObjectNode now;
+            try {
+                now = (ObjectNode) JSON.readTree(json);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // our own serializer's output
+            }
+            ObjectNode frame = JSON.createObjectNode().put("op", "status");
+            if (lastSent == null) {
+                frame.put("full", true);
+                frame.setAll(now);
+            } else {
+                for (Iterator<Map.Entry<String, JsonNode>> it = now.fields(); it.hasNext();) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    if (!field.getValue().equals(lastSent.get(field.getKey())))
+                        frame.set(field.getKey(), field.getValue());
+                }
+                ArrayNode unset = null;
+                for (Iterator<String> it = lastSent.fieldNames(); it.hasNext();) {
+                    String name = it.next();
+                    if (!now.has(name))
+                        (unset != null ? unset : (unset = frame.putArray("unset"))).add(name);
+                }
+                if (frame.size() == 1)
+                    return null;
+            }
+            lastSent = now;
+            return frame.toString();
+        }
+    }
+}
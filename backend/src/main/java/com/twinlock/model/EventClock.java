@@ -0,0 +1,209 @@
+package com.twinlock.model;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The decryption window's clock.
+ *
+ * Its setting is one immutable {@link State}, swapped in by CAS on every
+ * transition (start, pause, resume, extend, end), so readers never lock and
+ * never see half an update. While the window runs, its deadline is a
+ * System.nanoTime value fixed at the last transition: a read is one nanoTime
+ * call and a subtraction, and a step in the host's wall clock cannot move
+ * the end.
+ *
+ * {@link #read()} packs one reading into a long, so a request decides "open?"
+ * and "how long left?" from the same instant without allocating:
+ * bit 0 open
+ * bit 1 paused (remaining time is frozen)
+ * bits 2-63 remaining millis (0 once closed)
+ *
+ * Window time is the time the window has actually been open. Pausing stops
+ * it, and every resume moves the wall-clock instant of window time 0
+ * forward, so anything scheduled in window time — hint releases — shifts
+ * with the pause.
+ */
+public class EventClock {
+
+    private static final long OPEN = 1L;
+    private static final long PAUSED = 1L << 1;
+    private static final int REMAINING_SHIFT = 2;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /** One setting of the clock; everything but originNanos is what gets persisted. */
+    public static final class State {
+        public static final State NEVER_STARTED = new State(false, false, -1, 0, 0, 0);
+
+        private final boolean started; // by an admin, and not ended by one
+        private final boolean paused;
+        private final long originEpochMillis; // wall-clock instant of window time 0, -1 = never started
+        private final long pausedAtMillis; // window time the pause began at
+        private final long extensionMillis; // on top of the configured duration
+        private final long originNanos; // nanoTime twin of originEpochMillis
+
+        private State(boolean started, boolean paused, long originEpochMillis, long pausedAtMillis,
+                long extensionMillis, long originNanos) {
+            this.started = started;
+            this.paused = paused;
+            this.originEpochMillis = originEpochMillis;
+            this.pausedAtMillis = pausedAtMillis;
+            this.extensionMillis = extensionMillis;
+            this.originNanos = originNanos;
+        }
+
+        /** A persisted setting; a running window is re-anchored to nanoTime through the wall clock. */
+        public static State restored(boolean started, boolean paused, long originEpochMillis, long pausedAtMillis,
+                long extensionMillis) {
+            long originNanos = System.nanoTime() - (System.currentTimeMillis() - originEpochMillis) * NANOS_PER_MILLI;
+            return new State(started, paused, originEpochMillis, pausedAtMillis, extensionMillis, originNanos);
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        public boolean isPaused() {
+            return paused;
+        }
+
+        public long getOriginEpochMillis() {
+            return originEpochMillis;
+        }
+
+        public long getPausedAtMillis() {
+            return pausedAtMillis;
+        }
+
+        public long getExtensionMillis() {
+            return extensionMillis;
+        }
+    }
+
+    private final long baseMillis;
+    private final AtomicReference<State> state = new AtomicReference<>(State.NEVER_STARTED);
+
+    /** @param durationMillis configured window length, before any extension */
+    public EventClock(long durationMillis) {
+        baseMillis = durationMillis;
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    public long durationMillis(State s) {
+        return baseMillis + s.extensionMillis;
+    }
+
+    // ── Reading ───────────────────────────────────────────────────
+    public long read() {
+        return read(state.get());
+    }
+
+    private long read(State s) {
+        if (!s.started)
+            return 0L;
+        long duration = durationMillis(s);
+        if (s.paused)
+            return PAUSED | Math.max(0, duration - s.pausedAtMillis) << REMAINING_SHIFT;
+        long left = s.originNanos + duration * NANOS_PER_MILLI - System.nanoTime();
+        return left <= 0 ? 0L : OPEN | (left / NANOS_PER_MILLI) << REMAINING_SHIFT;
+    }
+
+    public static boolean open(long reading) {
+        return (reading & OPEN) != 0;
+    }
+
+    public static boolean paused(long reading) {
+        return (reading & PAUSED) != 0;
+    }
+
+    public static long remainingMillis(long reading) {
+        return reading >>> REMAINING_SHIFT;
+    }
+
+    public static long remainingSeconds(long reading) {
+        return remainingMillis(reading) / 1000;
+    }
+
+    /** Window time so far — frozen while paused, 0 unless started. */
+    public long elapsedMillis() {
+        State s = state.get();
+        if (!s.started)
+            return 0;
+        if (s.paused)
+            return s.pausedAtMillis;
+        long elapsed = (System.nanoTime() - s.originNanos) / NANOS_PER_MILLI;
+        return Math.max(0, Math.min(elapsed, durationMillis(s)));
+    }
+
+    /** Scheduled end as epoch millis; -1 unless started and not paused (no end is fixed then). */
+    public long endsAtEpochMillis() {
+        State s = state.get();
+        return !s.started || s.paused ? -1 : s.originEpochMillis + durationMillis(s);
+    }
+
+    // ── Transitions (false = not applicable in the current state) ─
+    /** Opens a fresh window unless one is open; a paused or ended one is discarded. */
+    public boolean start() {
+        while (true) {
+            State cur = state.get();
+            if (open(read(cur)))
+                return false;
+            State next = new State(true, false, System.currentTimeMillis(), 0, 0, System.nanoTime());
+            if (state.compareAndSet(cur, next))
+                return true;
+        }
+    }
+
+    public void end() {
+        State cur;
+        do {
+            cur = state.get();
+        } while (!state.compareAndSet(cur, new State(false, false, cur.originEpochMillis, cur.pausedAtMillis,
+                cur.extensionMillis, cur.originNanos)));
+    }
+
+    public boolean pause() {
+        while (true) {
+            State cur = state.get();
+            if (!open(read(cur)))
+                return false;
+            long at = (System.nanoTime() - cur.originNanos) / NANOS_PER_MILLI;
+            State next = new State(true, true, cur.originEpochMillis, Math.min(at, durationMillis(cur)),
+                    cur.extensionMillis, cur.originNanos);
+            if (state.compareAndSet(cur, next))
+                return true;
+        }
+    }
+
+    /** Window time picks up where the pause left it; the end moves out by the pause's length. */
+    public boolean resume() {
+        while (true) {
+            State cur = state.get();
+            if (!cur.started || !cur.paused)
+                return false;
+            State next = new State(true, false, System.currentTimeMillis() - cur.pausedAtMillis, 0,
+                    cur.extensionMillis, System.nanoTime() - cur.pausedAtMillis * NANOS_PER_MILLI);
+            if (state.compareAndSet(cur, next))
+                return true;
+        }
+    }
+
+    /** Lengthens a started window — open, paused, or run out but not ended (which reopens it). */
+    public boolean extend(long millis) {
+        while (true) {
+            State cur = state.get();
+            if (!cur.started || millis <= 0)
+                return false;
+            State next = new State(true, cur.paused, cur.originEpochMillis, cur.pausedAtMillis,
+                    cur.extensionMillis + millis, cur.originNanos);
+            if (state.compareAndSet(cur, next))
+                return true;
+        }
+    }
+
+    public void restore(State s) {
+        state.set(s);
+    }
+}
@@ -1,17 +1,65 @@
 package com.twinlock.model;
 
+/**
+ * Per-node progress, packed into a single word so every transition is one
+ * compare-and-set and concurrent submits can never double-count an attempt
+ * or skip a level. The word lives in a SessionStore slot — on heap by default,
+ * or in a memory-mapped table that survives the process. A word of 0 is an
+ * empty slot: the node has never logged in.
+ *
+ * Layout (low bits first):
+ * bits 0-3 current level (1=EASY 2=MEDIUM 3=HARD)
+ * bits 4-7 attempts used in THIS level (max 3)
+ * bit 8 authenticated
+ * bit 9 unlocked
+ * bit 10 permanently locked
+ * bits 11-12 hints released in THIS level (max 3)
+ * bits 13-31 second of the event window this level was entered at — once unlocked, the second it was cleared
+ * bits 32-63 version — bumped by every transition, so it only ever grows
+ */
 public class NodeSession {
-    private String teamId;
-    private String nodeId;
-    private boolean authenticated;
-    private int currentLevel = 1; // 1=EASY 2=MEDIUM 3=HARD
-    private int levelAttempts = 0; // attempts used in THIS level (max 3)
-    private boolean unlocked;
-    private boolean permanentlyLocked;
 
+    public static final int MAX_ATTEMPTS = 3;
+    public static final int MAX_HINTS = 3;
+    /** Entry seconds saturate here — about six days into the window. */
+    public static final int MAX_ENTERED_AT = 0x7FFFF;
+
+    private static final long LEVEL_MASK = 0xFL;
+    private static final int ATTEMPTS_SHIFT = 4;
+    private static final long ATTEMPTS_MASK = 0xFL << ATTEMPTS_SHIFT;
+    private static final long AUTHENTICATED = 1L << 8;
+    private static final long UNLOCKED = 1L << 9;
+    private static final long LOCKED = 1L << 10;
+    private static final int HINTS_SHIFT = 11;
+    private static final long HINTS_MASK = 0x3L << HINTS_SHIFT;
+    private static final int ENTERED_SHIFT = 13;
+    private static final long ENTERED_MASK = 0x7FFFFL << ENTERED_SHIFT;
+    private static final int VERSION_SHIFT = 32;
+    private static final long VERSION_ONE = 1L << VERSION_SHIFT;
+
+    public static final long INITIAL = 1L; // level 1, no attempts, no flags
+
+    private final String teamId;
+    private final String nodeId;
+    private final SessionStore store;
+    private final int slot;
+
+    /** Fresh session in its own single-slot heap store (nodes without a slot). */
     public NodeSession(String teamId, String nodeId) {
+        this(teamId, nodeId, new SessionStore.Heap(1), 0);
+        store.set(0, INITIAL);
+    }
+
+    private NodeSession(String teamId, String nodeId, SessionStore store, int slot) {
         this.teamId = teamId;
         this.nodeId = nodeId;
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /** View over an existing slot; its word is left as is (0 = no session yet). */
+    public static NodeSession attach(String teamId, String nodeId, SessionStore store, int slot) {
+        return new NodeSession(teamId, nodeId, store, slot);
     }
 
     public String getTeamId() {
@@ -22,38 +70,139 @@ public class NodeSession {
         return nodeId;
     }
 
+    // ── Raw state ─────────────────────────────────────────────────
+    public long state() {
+        return store.get(slot);
+    }
+
+    public boolean compareAndSet(long expect, long update) {
+        return store.compareAndSet(slot, expect, update);
+    }
+
+    /** Recovery only — overwrites the word with a journaled value. */
+    public void restoreState(long st) {
+        store.set(slot, st);
+    }
+
+    /**
+     * Back to level 1 with no attempts, hints or flags — bar AUTHENTICATED if
+     * {@code authenticated} — entered at second {@code enteredAt} of the
+     * window, in one transition; the version still moves forward.
+     */
+    public void reset(int enteredAt, boolean authenticated) {
+        long fresh = INITIAL | entered(enteredAt) | (authenticated ? AUTHENTICATED : 0L);
+        long st;
+        do {
+            st = store.get(slot);
+        } while (!store.compareAndSet(slot, st, bumped(st & ~(VERSION_ONE - 1)) | fresh));
+    }
+
+    // ── Word decoding ─────────────────────────────────────────────
+    public static int level(long st) {
+        return (int) (st & LEVEL_MASK);
+    }
+
+    public static int attempts(long st) {
+        return (int) ((st & ATTEMPTS_MASK) >>> ATTEMPTS_SHIFT);
+    }
+
+    public static int attemptsRemaining(long st) {
+        return Math.max(0, MAX_ATTEMPTS - attempts(st));
+    }
+
+    public static boolean authenticated(long st) {
+        return (st & AUTHENTICATED) != 0;
+    }
+
+    public static boolean unlocked(long st) {
+        return (st & UNLOCKED) != 0;
+    }
+
+    public static boolean locked(long st) {
+        return (st & LOCKED) != 0;
+    }
+
+    public static int hintsReleased(long st) {
+        return (int) ((st & HINTS_MASK) >>> HINTS_SHIFT);
+    }
+
+    /** Second of the event window the current level was entered at (0 = at the start). */
+    public static int enteredAt(long st) {
+        return (int) ((st & ENTERED_MASK) >>> ENTERED_SHIFT);
+    }
+
+    public static long version(long st) {
+        return st >>> VERSION_SHIFT;
+    }
+
+    // ── Word transitions (pure — callers CAS the result in) ───────
+    /** Next level, entered at second {@code enteredAt}: attempts and hints start over. */
+    public static long advanced(long st, int enteredAt) {
+        return bumped((st & ~(LEVEL_MASK | ATTEMPTS_MASK | HINTS_MASK | ENTERED_MASK))
+                | (level(st) + 1) | entered(enteredAt));
+    }
+
+    public static long failedAttempt(long st) {
+        long next = bumped((st & ~ATTEMPTS_MASK) | ((long) (attempts(st) + 1) << ATTEMPTS_SHIFT));
+        return attempts(st) + 1 >= MAX_ATTEMPTS ? next | LOCKED : next;
+    }
+
+    /** Final level cleared at second {@code at}, kept as the entry second so rankings can order it. */
+    public static long withUnlocked(long st, int at) {
+        return bumped((st & ~ENTERED_MASK) | UNLOCKED | entered(at));
+    }
+
+    public static long withLocked(long st) {
+        return bumped(st | LOCKED);
+    }
+
+    public static long withHintReleased(long st) {
+        return bumped((st & ~HINTS_MASK) | ((long) Math.min(MAX_HINTS, hintsReleased(st) + 1) << HINTS_SHIFT));
+    }
+
+    private static long entered(int second) {
+        return (long) Math.max(0, Math.min(second, MAX_ENTERED_AT)) << ENTERED_SHIFT;
+    }
+
+    private static long bumped(long st) {
+        return st + VERSION_ONE;
+    }
+
+    // ── Convenience accessors ─────────────────────────────────────
     public boolean isAuthenticated() {
-        return authenticated;
+        return authenticated(state());
     }
 
     public void setAuthenticated(boolean b) {
-        this.authenticated = b;
+        setAuthenticated(b, 0);
     }
 
-    public int getCurrentLevel() {
-        return currentLevel;
+    /** An empty slot starts a fresh session at the same time, entering level 1 at {@code enteredAt}. */
+    public void setAuthenticated(boolean b, int enteredAt) {
+        long st, next;
+        do {
+            st = store.get(slot);
+            next = b ? (st == 0L ? INITIAL | entered(enteredAt) : st) | AUTHENTICATED : st & ~AUTHENTICATED;
+            if (next == st)
+                return;
+        } while (!store.compareAndSet(slot, st, bumped(next)));
     }
 
-    public void advanceLevel() {
-        this.currentLevel++;
-        this.levelAttempts = 0;
+    public int getCurrentLevel() {
+        return level(state());
     }
 
     public int getLevelAttempts() {
-        return levelAttempts;
-    }
-
-    public void incrementLevelAttempts() {
-        this.levelAttempts++;
+        return attempts(state());
     }
 
     public int getLevelAttemptsRemaining() {
-        return Math.max(0, 3 - levelAttempts);
+        return attemptsRemaining(state());
     }
 
     // kept for admin/compat
     public int getAttempts() {
-        return levelAttempts;
+        return getLevelAttempts();
     }
 
     public int getAttemptsRemaining() {
@@ -61,18 +210,10 @@ public class NodeSession {
     }
 
     public boolean isUnlocked() {
-        return unlocked;
-    }
-
-    public void setUnlocked(boolean b) {
-        this.unlocked = b;
+        return unlocked(state());
     }
 
     public boolean isPermanentlyLocked() {
-        return permanentlyLocked;
-    }
-
-    public void setPermanentlyLocked(boolean b) {
-        this.permanentlyLocked = b;
+        return locked(state());
     }
 }
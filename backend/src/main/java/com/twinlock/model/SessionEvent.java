@@ -0,0 +1,69 @@
+package com.twinlock.model;
+
+/**
+ * Published by TwinLockService after every session or event-state transition.
+ * Node-level events carry teamId/nodeId and the state word the transition
+ * produced; event-wide ones (EVENT_*) leave them null and 0.
+ */
+public class SessionEvent {
+
+    public enum Type {
+        LOGIN, FAIL, LEVEL_UP, LOCK, UNLOCK, RESET, EVENT_START(true), EVENT_END(true),
+        // appended — SessionJournal records the ordinal
+        HINT, EVENT_PAUSE(true), EVENT_RESUME(true), EVENT_EXTEND(true),
+        // applied from another cluster instance — never replicated onward
+        REPLICA, EVENT_SYNC(true);
+
+        private final boolean eventWide;
+
+        Type() {
+            this(false);
+        }
+
+        Type(boolean eventWide) {
+            this.eventWide = eventWide;
+        }
+
+        /** Changes the event clock rather than a node. */
+        public boolean isEventWide() {
+            return eventWide;
+        }
+    }
+
+    private final Type type;
+    private final String teamId;
+    private final String nodeId;
+    private final long state;
+
+    public SessionEvent(Type type, String teamId, String nodeId, long state) {
+        this.type = type;
+        this.teamId = teamId;
+        this.nodeId = nodeId;
+        this.state = state;
+    }
+
+    public static SessionEvent eventWide(Type type) {
+        return new SessionEvent(type, null, null, 0L);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTeamId() {
+        return teamId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** The node's packed word as this transition left it — see NodeSession. */
+    public long getState() {
+        return state;
+    }
+
+    public boolean isEventWide() {
+        return teamId == null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.twinlock.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Backing table of packed NodeSession state words, one per slot. A word of 0
+ * means "no session in this slot" (a live session is always at level >= 1).
+ */
+public interface SessionStore {
+
+    int slots();
+
+    long get(int slot);
+
+    void set(int slot, long state);
+
+    boolean compareAndSet(int slot, long expect, long update);
+
+    // ── Event-wide state — only durable stores keep it ────────────
+    default void putEventState(EventClock.State clock) {
+    }
+
+    /** Last event clock put, or null if unknown / never started. */
+    default EventClock.State eventState() {
+        return null;
+    }
+
+    /** Push pending writes to durable storage; no-op for heap stores. */
+    default void flush() {
+    }
+
+    /** Plain on-heap table — the default store. */
+    class Heap implements SessionStore {
+        private final AtomicLongArray words;
+
+        public Heap(int slots) {
+            words = new AtomicLongArray(slots);
+        }
+
+        @Override
+        public int slots() {
+            return words.length();
+        }
+
+        @Override
+        public long get(int slot) {
+            return words.get(slot);
+        }
+
+        @Override
+        public void set(int slot, long state) {
+            words.set(slot, state);
+        }
+
+        @Override
+        public boolean compareAndSet(int slot, long expect, long update) {
+            return words.compareAndSet(slot, expect, update);
+        }
+    }
+}
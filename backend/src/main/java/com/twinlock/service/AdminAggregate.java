@@ -0,0 +1,254 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live admin dashboard, maintained on every session transition instead of
+ * rebuilt per request.
+ *
+ * Each slot remembers the state word last folded into the totals, so an
+ * update only moves the counters by the difference between the old and new
+ * word, and only the changed slot's row is rebuilt. Rows sit in slot order —
+ * roster order, node 1 before node 2 — so the table is always sorted.
+ * Every update also takes the next aggregate version; {@code changes} maps
+ * versions to slots so a reader holding version v gets exactly the rows that
+ * moved after it.
+ *
+ * One lock guards it all, and every transition takes it, so a query holds
+ * it only to copy what it reads — the words and rows of the slots in range,
+ * or of the slots changed since the reader's version — and filters the copy
+ * after letting go. It is a ReentrantLock rather than the object monitor: a
+ * virtual thread waiting on it unmounts instead of pinning its carrier.
+ */
+final class AdminAggregate {
+
+    /** Builds the immutable admin row for a slot's state word. */
+    interface RowBuilder {
+        Map<String, Object> row(int slot, long st);
+    }
+
+    static final String STATE_IDLE = "idle"; // never authenticated
+    static final String STATE_ACTIVE = "active";
+    static final String STATE_LOCKED = "locked";
+    static final String STATE_UNLOCKED = "unlocked";
+
+    private final SessionDirectory directory;
+    private final RowBuilder builder;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] seen; // by slot; 0 = no session
+    private final Map<String, Object>[] rows; // by slot
+    private final long[] changedAt; // by slot — version of the last change
+    private final TreeMap<Long, Integer> changes = new TreeMap<>();
+    private long version;
+
+    // totals over live sessions
+    private int live;
+    private int authenticated;
+    private int locked;
+    private int unlocked;
+    private final int[] perLevel = new int[4]; // index = level
+    private int teamsUnlocked; // both nodes unlocked
+
+    AdminAggregate(SessionDirectory directory, RowBuilder builder) {
+        this.directory = directory;
+        this.builder = builder;
+        int n = directory.slots();
+        seen = new long[n];
+        rows = newRows(n);
+        changedAt = new long[n];
+        for (int slot = 0; slot < n; slot++)
+            update(slot);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WRITE SIDE — one call per transition
+    // ════════════════════════════════════════════════════════════════
+
+    void update(int slot) {
+        NodeSession s = directory.view(slot);
+        if (s == null)
+            return;
+        lock.lock();
+        try {
+            long old = seen[slot];
+            long cur = s.state();
+            if (cur == old || (old != 0L && NodeSession.version(cur) < NodeSession.version(old)))
+                return; // already folded in, or a late call racing a newer one
+            boolean teamWasUnlocked = teamUnlocked(slot);
+            count(old, -1);
+            count(cur, +1);
+            seen[slot] = cur;
+            if (teamUnlocked(slot) != teamWasUnlocked)
+                teamsUnlocked += teamWasUnlocked ? -1 : 1;
+            rows[slot] = cur == 0L ? null : builder.row(slot, cur);
+            changes.remove(changedAt[slot]);
+            changedAt[slot] = ++version;
+            changes.put(version, slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void count(long st, int d) {
+        if (st == 0L)
+            return;
+        live += d;
+        if (NodeSession.authenticated(st))
+            authenticated += d;
+        if (NodeSession.locked(st))
+            locked += d;
+        if (NodeSession.unlocked(st))
+            unlocked += d;
+        perLevel[Math.min(NodeSession.level(st), 3)] += d;
+    }
+
+    private boolean teamUnlocked(int slot) {
+        int node1 = slot & ~1;
+        return NodeSession.unlocked(seen[node1]) && node1 + 1 < seen.length && NodeSession.unlocked(seen[node1 + 1]);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // READ SIDE
+    // ════════════════════════════════════════════════════════════════
+
+    long version() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, Object> totals() {
+        Map<String, Object> t = new LinkedHashMap<>();
+        Map<String, Integer> levels = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            t.put("nodes", live);
+            t.put("authenticated", authenticated);
+            t.put("locked", locked);
+            t.put("unlocked", unlocked);
+            t.put("teamsUnlocked", teamsUnlocked);
+            for (int l = 1; l <= 3; l++)
+                levels.put(String.valueOf(l), perLevel[l]);
+        } finally {
+            lock.unlock();
+        }
+        t.put("levels", levels);
+        return t;
+    }
+
+    /**
+     * Rows matching the filter. With {@code since >= 0} only rows changed
+     * after that version are returned (no paging — it is already the delta),
+     * and "removed" lists { teamId, nodeId } of the changed rows that no
+     * longer match, so a reader can drop them; otherwise page {@code page} of
+     * {@code size}. {@code into} receives "version", "matched", "nodes".
+     *
+     * @param team  team index or -1 for all
+     * @param level 1-3 or 0 for all
+     * @param state one of the STATE_* names or null for all
+     */
+    void query(int team, int level, String state, int page, int size, long since,
+            Map<String, Object> into) {
+        if (since >= 0)
+            changedSince(team, level, state, since, into);
+        else
+            page(team, level, state, page, size, into);
+    }
+
+    private void changedSince(int team, int level, String state, long since, Map<String, Object> into) {
+        int[] slots;
+        long[] words;
+        Map<String, Object>[] picked;
+        long at;
+        lock.lock();
+        try {
+            at = version;
+            Collection<Integer> changed = changes.tailMap(since, false).values();
+            slots = new int[changed.size()];
+            int i = 0;
+            for (int slot : changed)
+                slots[i++] = slot;
+            words = new long[slots.length];
+            picked = newRows(slots.length);
+            for (i = 0; i < slots.length; i++) {
+                words[i] = seen[slots[i]];
+                picked[i] = rows[slots[i]];
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        List<Map<String, String>> removed = new ArrayList<>();
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (team >= 0 && SessionDirectory.teamOf(slot) != team)
+                continue;
+            if (matches(words[i], level, state))
+                out.add(picked[i]);
+            else if (words[i] != 0L)
+                removed.add(Map.of("teamId", directory.teamId(SessionDirectory.teamOf(slot)),
+                        "nodeId", directory.nodeId(slot)));
+        }
+        into.put("version", at);
+        into.put("matched", out.size());
+        into.put("nodes", out);
+        into.put("removed", removed);
+    }
+
+    private void page(int team, int level, String state, int page, int size, Map<String, Object> into) {
+        int first = team >= 0 ? team << 1 : 0;
+        int last = team >= 0 ? Math.min(seen.length, first + 2) : seen.length;
+        long[] words = new long[last - first];
+        Map<String, Object>[] picked = newRows(words.length);
+        long at;
+        lock.lock();
+        try {
+            at = version;
+            System.arraycopy(seen, first, words, 0, words.length);
+            System.arraycopy(rows, first, picked, 0, words.length);
+        } finally {
+            lock.unlock();
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        int from = page * size;
+        int matched = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (!matches(words[i], level, state))
+                continue;
+            if (matched >= from && out.size() < size)
+                out.add(picked[i]);
+            matched++;
+        }
+        into.put("version", at);
+        into.put("matched", matched);
+        into.put("nodes", out);
+    }
+
+    private static boolean matches(long st, int level, String state) {
+        if (st == 0L)
+            return false;
+        if (level > 0 && NodeSession.level(st) != level)
+            return false;
+        return state == null || state.equals(stateOf(st));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object>[] newRows(int n) {
+        return (Map<String, Object>[]) new Map<?, ?>[n];
+    }
+
+    static String stateOf(long st) {
+        if (NodeSession.unlocked(st))
+            return STATE_UNLOCKED;
+        if (NodeSession.locked(st))
+            return STATE_LOCKED;
+        return NodeSession.authenticated(st) ? STATE_ACTIVE : STATE_IDLE;
+    }
+}
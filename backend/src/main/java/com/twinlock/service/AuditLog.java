@@ -0,0 +1,341 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Structured audit trail of every session and event-clock transition,
+ * written off the request path.
+ *
+ * Request threads claim a cell in a fixed ring by CAS on the tail sequence,
+ * fill it, and publish it by storing the cell's sequence number; they never
+ * lock, allocate or touch a file. When the ring is full the record is counted
+ * as dropped instead of waiting. One writer thread drains published cells in
+ * order, formats them as NDJSON and appends each batch to the current file,
+ * rolling to a new file past max-file-mb and keeping the newest max-files.
+ * A batch that fails to write is counted as dropped too — its cells are
+ * already free — and a failed roll keeps appending to the current file,
+ * trying again after ROLL_RETRY_SECONDS. Failures are logged once until a
+ * write succeeds again.
+ *
+ * One line per record, always in this field order:
+ * {"ts":epochMillis,"seq":n,"event":"FAIL","team":"TEAM01","node":"SYS-01",
+ * "level":1,"attempts":2,"hints":0,"authenticated":true,"locked":false,
+ * "unlocked":false,"version":7}
+ * Event-wide records (EVENT_*) have team and node null and no node fields.
+ * seq counts claims, so a gap in it is where records were dropped.
+ */
+@Service
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final SessionEvent.Type[] TYPES = SessionEvent.Type.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int MAX_BATCH = 4096;
+    private static final long ROLL_RETRY_SECONDS = 10;
+
+    static {
+        for (SessionEvent.Type t : TYPES)
+            TYPE_NAMES[t.ordinal()] = JsonBytes.ascii("\"" + t.name() + "\"");
+    }
+
+    private static final byte[] F_TS = JsonBytes.ascii("{\"ts\":");
+    private static final byte[] F_SEQ = JsonBytes.ascii(",\"seq\":");
+    private static final byte[] F_EVENT = JsonBytes.ascii(",\"event\":");
+    private static final byte[] F_TEAM = JsonBytes.ascii(",\"team\":");
+    private static final byte[] F_NODE = JsonBytes.ascii(",\"node\":");
+    private static final byte[] F_LEVEL = JsonBytes.ascii(",\"level\":");
+    private static final byte[] F_ATTEMPTS = JsonBytes.ascii(",\"attempts\":");
+    private static final byte[] F_HINTS = JsonBytes.ascii(",\"hints\":");
+    private static final byte[] F_AUTHENTICATED = JsonBytes.ascii(",\"authenticated\":");
+    private static final byte[] F_LOCKED = JsonBytes.ascii(",\"locked\":");
+    private static final byte[] F_UNLOCKED = JsonBytes.ascii(",\"unlocked\":");
+    private static final byte[] F_VERSION = JsonBytes.ascii(",\"version\":");
+    private static final byte[] NULL = JsonBytes.ascii("null");
+    private static final byte[] END = JsonBytes.ascii("}\n");
+
+    @Value("${twinlock.audit.enabled:true}")
+    private boolean enabled;
+    @Value("${twinlock.audit.dir:./twinlock-data/audit}")
+    private String dir;
+    @Value("${twinlock.audit.buffer-size:65536}")
+    private int bufferSize;
+    @Value("${twinlock.audit.max-file-mb:64}")
+    private long maxFileMb;
+    @Value("${twinlock.audit.max-files:20}")
+    private int maxFiles;
+
+    // ring — cell i holds the record with sequence s where s & mask == i
+    private int mask;
+    private long[] time;
+    private int[] type;
+    private String[] team;
+    private String[] node;
+    private long[] word;
+    private AtomicLongArray published; // cell -> sequence + 1 of the record in it, once filled
+    private final AtomicLong tail = new AtomicLong(); // next sequence to claim
+    private volatile long head; // next sequence the writer will read
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    // writer-thread state
+    private Path root;
+    private FileChannel file;
+    private long fileBytes;
+    private final String startStamp = LocalDateTime.now().format(FILE_STAMP);
+    private int rolls;
+    private long rollRetryAt = System.nanoTime(); // a failed roll waits until then
+    private boolean failing; // the last write failed; logged once until one succeeds
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(1 << 16);
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // ════════════════════════════════════════════════════════════════
+    // LIFECYCLE
+    // ════════════════════════════════════════════════════════════════
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled)
+            return;
+        int capacity = Integer.highestOneBit(Math.max(1024, Math.min(bufferSize, 1 << 22)) * 2 - 1);
+        mask = capacity - 1;
+        time = new long[capacity];
+        type = new int[capacity];
+        team = new String[capacity];
+        node = new String[capacity];
+        word = new long[capacity];
+        published = new AtomicLongArray(capacity);
+        root = Paths.get(dir);
+        Files.createDirectories(root);
+        roll();
+        running = true;
+        writer = new Thread(this::writeLoop, "twinlock-audit");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("[AUDIT] Writing to {} ({} record buffer).", root.toAbsolutePath(), capacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null)
+            return;
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(5000);
+        if (writer.isAlive()) {
+            // closing under it would fail its current write; the daemon dies with the process
+            log.warn("[AUDIT] Writer still busy after 5 s — {} records unwritten.", backlog());
+            return;
+        }
+        file.close();
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // RECORDING — any thread, never blocks
+    // ════════════════════════════════════════════════════════════════
+
+    /** A node transition; {@code st} is the state word it produced. */
+    public void record(SessionEvent.Type t, String teamId, String nodeId, long st) {
+        if (!running)
+            return;
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        int i = (int) (seq & mask);
+        time[i] = System.currentTimeMillis();
+        type[i] = t.ordinal();
+        team[i] = teamId;
+        node[i] = nodeId;
+        word[i] = st;
+        published.lazySet(i, seq + 1); // release: the fields above are visible before this
+    }
+
+    public void recordEventWide(SessionEvent.Type t) {
+        record(t, null, null, 0L);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    /** Records claimed but not yet written. */
+    public long backlog() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WRITER
+    // ════════════════════════════════════════════════════════════════
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int n = 0;
+            try {
+                n = drain();
+            } catch (IOException e) {
+                log.error("[AUDIT] Write failed.", e);
+            }
+            if (stopping && head == tail.get())
+                return;
+            if (n == 0)
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /** Formats and appends every published record, oldest first; returns how many. */
+    private int drain() throws IOException {
+        long h = head;
+        int n = 0;
+        line.reset();
+        while (n < MAX_BATCH) {
+            int i = (int) (h & mask);
+            if (published.get(i) != h + 1)
+                break; // not claimed yet, or still being filled
+            format(h, i);
+            team[i] = null;
+            node[i] = null;
+            h++;
+            n++;
+        }
+        if (n == 0)
+            return 0;
+        head = h; // frees the cells for producers
+        try {
+            if (!file.isOpen())
+                roll();
+            ByteBuffer buf = ByteBuffer.wrap(line.toByteArray());
+            while (buf.hasRemaining())
+                fileBytes += file.write(buf);
+        } catch (IOException e) {
+            // the cells are gone either way; part of the batch may have reached the file
+            dropped.add(n);
+            if (!failing)
+                log.error("[AUDIT] Write failed — dropping records until writes succeed again.", e);
+            failing = true;
+            return n;
+        }
+        written.add(n);
+        if (failing)
+            log.info("[AUDIT] Writing again.");
+        failing = false;
+        if (fileBytes >= maxFileMb * 1024 * 1024 && System.nanoTime() - rollRetryAt >= 0) {
+            try {
+                roll();
+            } catch (IOException e) {
+                rollRetryAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ROLL_RETRY_SECONDS);
+                log.warn("[AUDIT] Could not start a new file ({}) — still appending to the current one.",
+                        e.toString());
+            }
+        }
+        return n;
+    }
+
+    private void format(long seq, int i) throws IOException {
+        line.write(F_TS);
+        JsonBytes.write(line, time[i]);
+        line.write(F_SEQ);
+        JsonBytes.write(line, seq);
+        line.write(F_EVENT);
+        line.write(TYPE_NAMES[type[i]]);
+        line.write(F_TEAM);
+        if (team[i] == null) {
+            line.write(NULL);
+            line.write(F_NODE);
+            line.write(NULL);
+        } else {
+            long st = word[i];
+            JsonBytes.write(line, team[i]);
+            line.write(F_NODE);
+            JsonBytes.write(line, node[i]);
+            line.write(F_LEVEL);
+            JsonBytes.write(line, NodeSession.level(st));
+            line.write(F_ATTEMPTS);
+            JsonBytes.write(line, NodeSession.attempts(st));
+            line.write(F_HINTS);
+            JsonBytes.write(line, NodeSession.hintsReleased(st));
+            line.write(F_AUTHENTICATED);
+            JsonBytes.write(line, NodeSession.authenticated(st));
+            line.write(F_LOCKED);
+            JsonBytes.write(line, NodeSession.locked(st));
+            line.write(F_UNLOCKED);
+            JsonBytes.write(line, NodeSession.unlocked(st));
+            line.write(F_VERSION);
+            JsonBytes.write(line, NodeSession.version(st));
+        }
+        line.write(END);
+    }
+
+    /**
+     * Starts a new file and deletes the oldest beyond max-files. The new file
+     * is opened before the old one is closed, so if that fails the writer
+     * still has somewhere to append.
+     */
+    private void roll() throws IOException {
+        // names sort oldest first: start stamp of this process, then its roll count
+        Path next;
+        do {
+            next = root.resolve(String.format("audit-%s-%03d.ndjson", startStamp, rolls++));
+        } while (Files.exists(next));
+        FileChannel opened = FileChannel.open(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        FileChannel old = file;
+        file = opened;
+        fileBytes = 0;
+        if (old != null) {
+            try {
+                old.close();
+            } catch (IOException e) {
+                log.warn("[AUDIT] Closing the previous file failed: {}", e.toString());
+            }
+        }
+        List<Path> all = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(p -> p.getFileName().toString().matches("audit-.*\\.ndjson")).sorted().forEach(all::add);
+            for (int k = 0; k < all.size() - Math.max(1, maxFiles); k++)
+                Files.deleteIfExists(all.get(k));
+        } catch (IOException e) {
+            log.warn("[AUDIT] Pruning old files failed: {}", e.toString()); // the new file is in use regardless
+        }
+    }
+}
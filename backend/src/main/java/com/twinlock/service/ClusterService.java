@@ -0,0 +1,693 @@
+package com.twinlock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.twinlock.model.EventClock;
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cluster mode: several instances share the roster, each team owned by one.
+ *
+ * Teams are placed on a {@link HashRing} of the configured peers. The first
+ * live peer on a team's preference list owns it — makes every transition —
+ * and the next {@code replicas} live peers follow it: the owner pushes each
+ * new state word to them, and the first follower takes over if the owner
+ * stops answering heartbeats. Other instances forward login, submit and
+ * reset to the owner, and proxy reads (status, restore) to it for teams they
+ * hold no copy of. With replicas = peers - 1 every instance holds every team
+ * and serves status polls itself.
+ *
+ * State words carry a version that only grows, so replication just ships
+ * absolute words: a receiver keeps whichever is newer, duplicates and
+ * reordering are harmless, and catching up is "send everything". That is
+ * what happens when membership changes, when a push fails, and when an
+ * instance starts (it pulls before it answers as ready).
+ *
+ * Versions alone can't order two owners' histories: a follower that takes
+ * over continues from the last word it received, so the old owner's
+ * unpushed words and the new owner's carry the same versions. Each word
+ * therefore travels with the ownership epoch it was written in — its
+ * writer's wall clock when it last gained teams, tagged with its peer
+ * number — and a later epoch wins over any version from an earlier one.
+ * See {@link #supersedes}.
+ *
+ * The event clock is cluster-wide: admin clock actions run on the
+ * coordinator (lowest-numbered live peer) and are broadcast to all.
+ * Instances' wall clocks are assumed NTP-synced — a replicated clock is
+ * re-anchored through the receiver's wall clock.
+ *
+ * Peers talk plain HTTP on /api/cluster/*, authenticated by a shared key;
+ * there is no broker.
+ */
+@Service
+public class ClusterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+
+    public static final String KEY_HEADER = "X-Cluster-Key";
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+    public static final MediaType WIRE_TYPE = MediaType.APPLICATION_OCTET_STREAM;
+
+    private static final int MAX_PEERS = 64; // one bit each in the live mask
+    private static final int MISSES_BEFORE_DOWN = 3;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(3);
+    private static final List<String> FORWARDED_REQUEST_HEADERS = List.of(
+            "X-Admin-Key", HttpHeaders.IF_NONE_MATCH, HttpHeaders.ACCEPT);
+    private static final List<String> FORWARDED_RESPONSE_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.RETRY_AFTER);
+
+    @Value("${twinlock.cluster.enabled:false}")
+    private boolean enabled;
+    @Value("${twinlock.cluster.peers:}")
+    private String peersConfig;
+    @Value("${twinlock.cluster.self:}")
+    private String selfConfig;
+    @Value("${twinlock.cluster.replicas:1}")
+    private int replicas;
+    @Value("${twinlock.cluster.key:}")
+    private String clusterKey;
+    @Value("${twinlock.admin-key:TWINLOCK_ADMIN_2024}")
+    private String adminKey;
+    @Value("${twinlock.cluster.heartbeat-millis:1000}")
+    private long heartbeatMillis;
+
+    private final TwinLockService service;
+    private final ObjectMapper json;
+
+    private String[] peers; // base URLs, as configured
+    private int self = -1;
+    private byte[] prefs; // [team * peers.length + k] = k-th peer on the team's preference list
+    private long roster;
+
+    private volatile long liveMask; // bit p = peer p answers as ready; our own bit once we are
+    private volatile boolean ready;
+    private final AtomicLong resyncMask = new AtomicLong(); // peers owed a full push
+    private volatile long epoch; // stamped on words written here; see renewEpoch
+    private AtomicLongArray wordEpochs; // by slot: epoch the current word was written in, 0 = unknown
+    private int[] misses; // heartbeat thread only
+
+    private HttpClient http;
+    private ScheduledExecutorService heartbeat;
+    private Thread sender;
+
+    // replication inbox — slots whose word changed here, drained by the sender
+    private final ReentrantLock inboxLock = new ReentrantLock();
+    private final Condition inboxNonEmpty = inboxLock.newCondition();
+    private int[] inbox = new int[64];
+    private int inboxSize;
+    private boolean clockDirty;
+
+    public ClusterService(TwinLockService service, ObjectMapper json) {
+        this.service = service;
+        this.json = json;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled)
+            return;
+        List<String> list = new ArrayList<>();
+        for (String p : peersConfig.split(","))
+            if (!p.isBlank())
+                list.add(trimSlash(p.trim()));
+        String me = trimSlash(selfConfig.trim());
+        self = list.indexOf(me);
+        if (list.isEmpty() || list.size() > MAX_PEERS || self < 0)
+            throw new IllegalStateException("twinlock.cluster.peers must list 1-" + MAX_PEERS
+                    + " base URLs including twinlock.cluster.self ('" + me + "')");
+        if (new HashSet<>(list).size() != list.size())
+            throw new IllegalStateException("twinlock.cluster.peers lists a peer twice");
+        // the key lets a request skip routing and overwrite state words — it must not be one clients know
+        if (clusterKey.isBlank() || clusterKey.equals(adminKey))
+            throw new IllegalStateException("twinlock.cluster.key (CLUSTER_KEY) must be set, and differ from the admin key");
+        peers = list.toArray(new String[0]);
+        replicas = Math.max(0, Math.min(replicas, peers.length - 1));
+        misses = new int[peers.length];
+        wordEpochs = new AtomicLongArray(service.slotCount());
+
+        HashRing ring = new HashRing(list);
+        int teams = service.slotCount() / 2;
+        prefs = new byte[teams * peers.length];
+        for (int team = 0; team < teams; team++)
+            ring.preference(service.teamIdOf(2 * team), prefs, team * peers.length);
+        roster = service.rosterFingerprint();
+        service.setSlotOwnership(this::ownsHere);
+        log.info("[CLUSTER] Peer {} of {} ({}), {} follower(s) per team.", self, peers.length, me, replicas);
+    }
+
+    /** Starts once the web server is up, so peers can reach us while we pull. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        http = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+        int pulled = 0;
+        for (int p = 0; p < peers.length; p++)
+            if (p != self)
+                pulled += pull(p);
+        ready = true;
+        setLive(liveMask | 1L << self);
+        log.info("[CLUSTER] Ready — pulled {} newer session(s) from peers.", pulled);
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "twinlock-cluster"));
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        sender = daemon(this::sendLoop, "twinlock-replicate");
+        sender.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat != null)
+            heartbeat.shutdownNow();
+        if (sender != null)
+            sender.interrupt();
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // ROUTING — which instance handles a request
+    // ════════════════════════════════════════════════════════════════
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether client writes may run here yet: false while a cluster instance
+     * is still pulling state at startup — it would take every team as its own.
+     */
+    public boolean acceptsWrites() {
+        return !enabled || (liveMask & 1L << self) != 0;
+    }
+
+    /** Whether another instance relayed the request here, carrying the key — it must not be routed again. */
+    public boolean isRelayed(HttpServletRequest request) {
+        return request.getHeader(FORWARDED_HEADER) != null && isPeerRequest(request);
+    }
+
+    /** Peer a write on the slot must go to, or -1 to handle it here. */
+    public int writeTarget(int slot, HttpServletRequest request) {
+        return isRelayed(request) ? -1 : ownerTarget(slot);
+    }
+
+    /** Peer that owns the slot's team, or -1 if this instance does — for connections, which are never relayed. */
+    public int ownerTarget(int slot) {
+        if (!enabled || slot == SessionDirectory.NONE)
+            return -1;
+        int owner = actingOwner(SessionDirectory.teamOf(slot), liveMask);
+        return owner == self ? -1 : owner;
+    }
+
+    /** Peer a read of the slot must go to, or -1 if this instance holds a copy. */
+    public int readTarget(int slot, HttpServletRequest request) {
+        if (!enabled || slot == SessionDirectory.NONE || isRelayed(request))
+            return -1;
+        int team = SessionDirectory.teamOf(slot);
+        long mask = liveMask;
+        return holds(team, self, mask) ? -1 : actingOwner(team, mask);
+    }
+
+    /** Peer event-clock actions must go to, or -1 if this instance is the coordinator. */
+    public int coordinatorTarget(HttpServletRequest request) {
+        if (!enabled || isRelayed(request))
+            return -1;
+        long mask = liveMask;
+        int coordinator = mask == 0 ? -1 : Long.numberOfTrailingZeros(mask);
+        return coordinator == self ? -1 : coordinator;
+    }
+
+    /** Whether this instance is the team's acting owner; always true unless clustered. */
+    public boolean ownsTeam(int team) {
+        return !enabled || actingOwner(team, liveMask) == self;
+    }
+
+    public String peerUrl(int peer) {
+        return peers[peer];
+    }
+
+    /** Whether the request came from another instance holding the cluster key. */
+    public boolean isPeerRequest(HttpServletRequest request) {
+        return enabled && authorized(request.getHeader(KEY_HEADER));
+    }
+
+    public boolean authorized(String key) {
+        return enabled && key != null && MessageDigest.isEqual(
+                key.getBytes(StandardCharsets.UTF_8), clusterKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean ownsHere(int slot) {
+        return actingOwner(SessionDirectory.teamOf(slot), liveMask) == self;
+    }
+
+    /** First live peer on the team's preference list; -1 if none is live yet. */
+    private int actingOwner(int team, long mask) {
+        int base = team * peers.length;
+        for (int k = 0; k < peers.length; k++) {
+            int p = prefs[base + k];
+            if ((mask & 1L << p) != 0)
+                return p;
+        }
+        return -1;
+    }
+
+    /** Whether the peer is the team's owner or one of its followers under this mask. */
+    private boolean holds(int team, int peer, long mask) {
+        int base = team * peers.length;
+        int ahead = 0; // live peers before it on the list
+        for (int k = 0; k < peers.length; k++) {
+            int p = prefs[base + k];
+            if (p == peer)
+                return true;
+            if ((mask & 1L << p) != 0 && ++ahead > replicas)
+                return false;
+        }
+        return false;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // FORWARDING — client requests relayed to another instance
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * Replays the request on the peer — same path, query and admin key, the
+     * body re-encoded as JSON — and relays its answer. The peer skips the
+     * address throttle (it ran here) and never forwards again.
+     */
+    public ResponseEntity<byte[]> forward(int peer, HttpServletRequest request, Object body) {
+        return forward(peer, request, request.getQueryString(), body);
+    }
+
+    /** As above with another query string (null for none) — for a slice of a batch. */
+    public ResponseEntity<byte[]> forward(int peer, HttpServletRequest request, String query, Object body) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(
+                peers[peer] + request.getRequestURI() + (query != null ? "?" + query : "")))
+                .timeout(REQUEST_TIMEOUT)
+                .header(KEY_HEADER, clusterKey)
+                .header(FORWARDED_HEADER, peers[self]);
+        for (String h : FORWARDED_REQUEST_HEADERS) {
+            String v = request.getHeader(h);
+            if (v != null)
+                b.header(h, v);
+        }
+        try {
+            if (body == null) {
+                b.GET();
+            } else {
+                b.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+                b.POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+            }
+            HttpResponse<byte[]> r = http.send(b.build(), HttpResponse.BodyHandlers.ofByteArray());
+            ResponseEntity.BodyBuilder out = ResponseEntity.status(r.statusCode());
+            for (String h : FORWARDED_RESPONSE_HEADERS)
+                r.headers().firstValue(h).ifPresent(v -> out.header(h, v));
+            return out.body(r.body());
+        } catch (IOException e) {
+            log.warn("[CLUSTER] Forward to {} failed: {}", peers[peer], e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"status\":\"UNAVAILABLE\",\"message\":\"Owning instance unreachable — retry shortly.\"}"
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Relays the entries of a batch that belong to the peer — the same
+     * endpoint, with the query or body naming only them — and returns the
+     * peer's answers in order. Null if the peer failed or did not answer
+     * with one element per entry; the caller answers those as unavailable.
+     */
+    public List<Object> forwardBatch(int peer, HttpServletRequest request, String query, Object body, int entries) {
+        ResponseEntity<byte[]> r = forward(peer, request, query, body);
+        if (r.getStatusCode().value() != 200)
+            return null;
+        try {
+            List<?> answers = json.readValue(r.getBody(), List.class);
+            return answers.size() == entries ? new ArrayList<>(answers) : null;
+        } catch (IOException e) {
+            log.warn("[CLUSTER] Unreadable batch answer from {}: {}", peers[peer], e.getMessage());
+            return null;
+        }
+    }
+
+    /** Per-entry answer for a batch entry whose owner could not be reached. */
+    public static Map<String, Object> unavailable() {
+        return Map.of("status", "UNAVAILABLE", "message", "Owning instance unreachable — retry shortly.");
+    }
+
+    /**
+     * Replays a GET on every other live peer, for reads no one instance can
+     * answer alone. Each answer is parsed as a JSON object; a peer that fails
+     * or answers anything but 200 leaves a null in its place.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> gather(HttpServletRequest request) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        long mask = liveMask;
+        for (int p = 0; p < peers.length; p++) {
+            if (p == self || (mask & 1L << p) == 0)
+                continue;
+            ResponseEntity<byte[]> r = forward(p, request, null);
+            Map<String, Object> body = null;
+            if (r.getStatusCode().value() == 200) {
+                try {
+                    body = json.readValue(r.getBody(), Map.class);
+                } catch (IOException e) {
+                    log.warn("[CLUSTER] Unreadable answer from {}: {}", peers[p], e.getMessage());
+                }
+            }
+            out.add(body);
+        }
+        return out;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // REPLICATION — outbound
+    // ════════════════════════════════════════════════════════════════
+
+    @EventListener
+    public void onSessionEvent(SessionEvent e) {
+        if (!enabled || e.getType() == SessionEvent.Type.REPLICA || e.getType() == SessionEvent.Type.EVENT_SYNC)
+            return;
+        int slot = e.isEventWide() ? SessionDirectory.NONE : service.resolve(e.getTeamId(), e.getNodeId());
+        if (slot != SessionDirectory.NONE)
+            wordEpochs.set(slot, epoch);
+        inboxLock.lock();
+        try {
+            if (slot == SessionDirectory.NONE) {
+                clockDirty = true;
+            } else {
+                if (inboxSize == inbox.length)
+                    inbox = Arrays.copyOf(inbox, inboxSize * 2);
+                inbox[inboxSize++] = slot;
+            }
+            inboxNonEmpty.signal();
+        } finally {
+            inboxLock.unlock();
+        }
+    }
+
+    /**
+     * Ships words as of sending time, so a burst on one slot goes out once.
+     * A failed push is not retried as such — the peer is marked for a full
+     * resync, which the next heartbeat that reaches it performs.
+     */
+    private void sendLoop() {
+        int[] batch = new int[64];
+        BitSet queued = new BitSet(service.slotCount());
+        while (!Thread.currentThread().isInterrupted()) {
+            int n;
+            boolean clock;
+            inboxLock.lock();
+            try {
+                while (inboxSize == 0 && !clockDirty)
+                    inboxNonEmpty.await();
+                int[] drained = inbox;
+                n = inboxSize;
+                inbox = batch.length >= drained.length ? batch : new int[drained.length];
+                batch = drained;
+                inboxSize = 0;
+                clock = clockDirty;
+                clockDirty = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                inboxLock.unlock();
+            }
+            long mask = liveMask;
+            for (int p = 0; p < peers.length; p++) {
+                if (p == self || (mask & 1L << p) == 0)
+                    continue;
+                queued.clear();
+                List<Integer> slots = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    int slot = batch[i];
+                    if (!queued.get(slot) && holds(SessionDirectory.teamOf(slot), p, mask)) {
+                        queued.set(slot);
+                        slots.add(slot);
+                    }
+                }
+                long bit = 1L << p;
+                if ((clock || !slots.isEmpty()) && !push(p, clock, slots))
+                    resyncMask.getAndUpdate(m -> m | bit);
+            }
+        }
+    }
+
+    private boolean push(int peer, boolean clock, Collection<Integer> slots) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(peers[peer] + "/api/cluster/replicate"))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header(KEY_HEADER, clusterKey)
+                    .header(HttpHeaders.CONTENT_TYPE, WIRE_TYPE.toString())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(encode(clock, slots)))
+                    .build();
+            return http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            log.debug("[CLUSTER] Push to {} failed: {}", peers[peer], e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Everything the peer should hold that this instance owns; the clock too if we coordinate. */
+    private boolean resync(int peer) {
+        long mask = liveMask;
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < service.slotCount(); slot++) {
+            int team = SessionDirectory.teamOf(slot);
+            if (service.stateOf(slot) != 0L && actingOwner(team, mask) == self && holds(team, peer, mask))
+                slots.add(slot);
+        }
+        boolean clock = Long.numberOfTrailingZeros(mask) == self;
+        return push(peer, clock, slots);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WIRE FORMAT — roster fingerprint, optional clock, (slot, word, epoch)
+    // ════════════════════════════════════════════════════════════════
+
+    private byte[] encode(boolean clock, Collection<Integer> slots) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(32 + 20 * slots.size());
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeLong(roster);
+        out.writeBoolean(clock);
+        if (clock)
+            SessionJournal.writeClock(out, service.getEventClock());
+        out.writeInt(slots.size());
+        for (int slot : slots) {
+            out.writeInt(slot);
+            out.writeLong(service.stateOf(slot));
+            out.writeLong(wordEpochs.get(slot));
+        }
+        return buf.toByteArray();
+    }
+
+    /** @return words that were newer than ours, or -1 if the roster differs */
+    public int apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        if (in.readLong() != roster)
+            return -1;
+        if (in.readBoolean()) {
+            EventClock.State clock = SessionJournal.readClock(in);
+            if (clock.getOriginEpochMillis() >= 0)
+                service.applyReplicaClock(clock);
+        }
+        int n = in.readInt();
+        int applied = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = in.readInt();
+            long word = in.readLong();
+            long wordEpoch = in.readLong();
+            if (slot < 0 || slot >= service.slotCount())
+                continue;
+            long ours = wordEpochs.get(slot);
+            if (service.applyReplica(slot, word, cur -> supersedes(word, wordEpoch, cur, ours))) {
+                wordEpochs.set(slot, wordEpoch);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Whether a peer's word replaces ours. Words from different ownership
+     * epochs are ordered by epoch: after a failover the new owner's history
+     * wins over whatever the old one wrote and never pushed, even at higher
+     * versions. Within one epoch — or when ours has none, as after journal
+     * recovery — the higher version wins. Equal versions that still differ
+     * are settled by epoch and then by the larger word, so both sides keep
+     * the same one.
+     */
+    static boolean supersedes(long word, long wordEpoch, long cur, long curEpoch) {
+        if (word == cur)
+            return false;
+        if (wordEpoch != 0 && curEpoch != 0 && wordEpoch != curEpoch)
+            return wordEpoch > curEpoch;
+        long v = NodeSession.version(word), cv = NodeSession.version(cur);
+        if (v != cv)
+            return v > cv;
+        return wordEpoch != curEpoch ? wordEpoch > curEpoch : word > cur;
+    }
+
+    /** What a starting peer pulls: every live word of the teams it would hold, and the clock. */
+    public byte[] syncFor(int peer) throws IOException {
+        if (peer < 0 || peer >= peers.length)
+            return encode(false, List.of());
+        long mask = liveMask | 1L << peer;
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < service.slotCount(); slot++)
+            if (service.stateOf(slot) != 0L && holds(SessionDirectory.teamOf(slot), peer, mask))
+                slots.add(slot);
+        return encode(service.getEventClock().getOriginEpochMillis() >= 0, slots);
+    }
+
+    private int pull(int peer) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(peers[peer] + "/api/cluster/sync?peer=" + self))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header(KEY_HEADER, clusterKey)
+                    .GET().build();
+            HttpResponse<byte[]> r = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+            if (r.statusCode() != 200)
+                return 0;
+            int n = apply(r.body());
+            if (n < 0)
+                log.error("[CLUSTER] {} runs a different roster — not syncing with it.", peers[peer]);
+            return Math.max(0, n);
+        } catch (IOException e) {
+            return 0; // not up yet — it will pull from us instead
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // MEMBERSHIP — heartbeat thread
+    // ════════════════════════════════════════════════════════════════
+
+    public Map<String, Object> ping() {
+        return Map.of("ready", ready, "peer", self, "roster", Long.toHexString(roster));
+    }
+
+    private void beat() {
+        try {
+            List<CompletableFuture<Boolean>> answers = new ArrayList<>();
+            for (int p = 0; p < peers.length; p++)
+                answers.add(p == self ? CompletableFuture.completedFuture(true) : pingAsync(p));
+            long mask = liveMask;
+            for (int p = 0; p < peers.length; p++) {
+                if (p == self)
+                    continue;
+                if (answers.get(p).join()) {
+                    misses[p] = 0;
+                    mask |= 1L << p;
+                } else if (++misses[p] >= MISSES_BEFORE_DOWN) {
+                    mask &= ~(1L << p);
+                }
+            }
+            setLive(mask);
+            long owed = resyncMask.get() & mask;
+            for (int p = 0; p < peers.length; p++) {
+                long bit = 1L << p;
+                if ((owed & bit) != 0 && resync(p))
+                    resyncMask.getAndUpdate(m -> m & ~bit);
+            }
+        } catch (RuntimeException e) {
+            log.error("[CLUSTER] Heartbeat failed", e);
+        }
+    }
+
+    private CompletableFuture<Boolean> pingAsync(int peer) {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(peers[peer] + "/api/cluster/ping"))
+                .timeout(REQUEST_TIMEOUT)
+                .header(KEY_HEADER, clusterKey)
+                .GET().build();
+        String expect = "\"roster\":\"" + Long.toHexString(roster) + "\"";
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(r -> r.statusCode() == 200 && r.body().contains("\"ready\":true")
+                        && r.body().contains(expect))
+                .exceptionally(e -> false);
+    }
+
+    private void setLive(long mask) {
+        long old = liveMask;
+        if (mask == old)
+            return;
+        // we join, or someone leaves: teams may move to us — stamp their next words after the handover
+        if ((old & ~mask) != 0 || ((mask & ~old) & 1L << self) != 0)
+            renewEpoch();
+        liveMask = mask;
+        // owners and followers may have moved — bring every live peer up to date
+        resyncMask.getAndUpdate(m -> m | (mask & ~(1L << self)));
+        List<String> up = new ArrayList<>();
+        for (int p = 0; p < peers.length; p++)
+            if ((mask & 1L << p) != 0)
+                up.add(peers[p]);
+        log.info("[CLUSTER] Live: {}", up);
+        service.ownershipChanged();
+    }
+
+    /** Wall-clock millis with our peer number in the low 6 bits — unique, and never going back. */
+    private void renewEpoch() {
+        epoch = Math.max(epoch + MAX_PEERS, System.currentTimeMillis() * MAX_PEERS + self);
+    }
+
+    /** Live peers' URLs, for the admin view. */
+    public List<String> livePeers() {
+        List<String> up = new ArrayList<>();
+        if (!enabled)
+            return up;
+        long mask = liveMask;
+        for (int p = 0; p < peers.length; p++)
+            if ((mask & 1L << p) != 0)
+                up.add(peers[p]);
+        return up;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,192 @@
+package com.twinlock.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Access keys by slot.
+ *
+ * Verification walks the stored key in full whatever the candidate looks
+ * like, so the time taken says nothing about how many leading characters
+ * were right, and it reads the candidate's chars in place without
+ * allocating.
+ */
+interface CredentialTable {
+
+    /** Auto-generated keys: the first 4 HMAC bytes as upper-case hex. */
+    int DERIVED_LENGTH = 8;
+
+    /** Constant-time in the stored key's length; false for a slot without a credential. */
+    boolean matches(int slot, String candidate);
+
+    boolean has(int slot);
+
+    /** The key as a string — for the admin credential sheet, not the login path. */
+    String key(int slot);
+
+    // ── Building ──────────────────────────────────────────────────
+
+    /**
+     * Derives HMAC-SHA256(salt, "TEAM_NODE") keys for every slot with a node
+     * ID, in parallel, borrowing initialised Macs from one pool.
+     */
+    static CredentialTable derive(String salt, String[] teamIds, String[] nodeIds) {
+        Deriver.Pool derivers = Deriver.pool(salt);
+        int[] offsets = new int[nodeIds.length + 1];
+        for (int slot = 0; slot < nodeIds.length; slot++)
+            offsets[slot + 1] = offsets[slot] + (nodeIds[slot] != null ? DERIVED_LENGTH : 0);
+        byte[] keys = new byte[offsets[nodeIds.length]];
+        IntStream.range(0, nodeIds.length).parallel().forEach(slot -> {
+            if (nodeIds[slot] != null)
+                Deriver.hex(derivers.derive(teamIds[slot >> 1], nodeIds[slot]), keys, offsets[slot]);
+        });
+        return new Packed(keys, offsets);
+    }
+
+    /** Configured keys by slot (null = none). Keys must be printable ASCII — see {@link #storable}. */
+    static CredentialTable of(String[] keysBySlot) {
+        int[] offsets = new int[keysBySlot.length + 1];
+        for (int slot = 0; slot < keysBySlot.length; slot++)
+            offsets[slot + 1] = offsets[slot] + (keysBySlot[slot] != null ? keysBySlot[slot].length() : 0);
+        byte[] keys = new byte[offsets[keysBySlot.length]];
+        for (int slot = 0; slot < keysBySlot.length; slot++) {
+            String k = keysBySlot[slot];
+            for (int i = 0; k != null && i < k.length(); i++)
+                keys[offsets[slot] + i] = (byte) k.charAt(i);
+        }
+        return new Packed(keys, offsets);
+    }
+
+    static boolean storable(String key) {
+        if (key == null || key.isEmpty())
+            return false;
+        for (int i = 0; i < key.length(); i++)
+            if (key.charAt(i) <= ' ' || key.charAt(i) > '~')
+                return false;
+        return true;
+    }
+
+    /**
+     * Every key in one ASCII byte array — key i is
+     * {@code keys[offsets[i] .. offsets[i + 1])}, empty when the slot has no
+     * credential.
+     */
+    final class Packed implements CredentialTable {
+        private final byte[] keys;
+        private final int[] offsets; // slots + 1 entries
+
+        private Packed(byte[] keys, int[] offsets) {
+            this.keys = keys;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public boolean matches(int slot, String candidate) {
+            int from = offsets[slot];
+            int len = offsets[slot + 1] - from;
+            if (len == 0 || candidate == null)
+                return false;
+            int n = candidate.length();
+            int diff = len ^ n;
+            for (int i = 0; i < len; i++) {
+                int c = i < n ? candidate.charAt(i) : 0;
+                diff |= keys[from + i] ^ c; // any non-ASCII char differs from every stored byte
+            }
+            return diff == 0;
+        }
+
+        @Override
+        public boolean has(int slot) {
+            return offsets[slot + 1] > offsets[slot];
+        }
+
+        @Override
+        public String key(int slot) {
+            int from = offsets[slot];
+            int len = offsets[slot + 1] - from;
+            return len == 0 ? null : new String(keys, from, len, StandardCharsets.US_ASCII);
+        }
+    }
+
+    // ── Derivation ────────────────────────────────────────────────
+
+    /** One keyed Mac and output buffer; not thread-safe — borrow one from a {@link Pool}. */
+    final class Deriver {
+        private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+        private final Mac mac;
+        private final byte[] out;
+
+        private Deriver(byte[] secret) {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new IllegalStateException("Cannot key HmacSHA256 with the secret salt", e);
+            }
+            out = new byte[mac.getMacLength()];
+        }
+
+        /**
+         * Holds up to one idle Deriver per core. Fails fast with
+         * IllegalStateException if the salt cannot key a Mac.
+         */
+        static Pool pool(String salt) {
+            return new Pool(salt.getBytes(StandardCharsets.UTF_8), Runtime.getRuntime().availableProcessors());
+        }
+
+        /** The first 4 HMAC bytes, big-endian — the key is their hex. */
+        int derive(String teamId, String nodeId) {
+            mac.update(teamId.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '_');
+            mac.update(nodeId.getBytes(StandardCharsets.UTF_8));
+            try {
+                mac.doFinal(out, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return (out[0] & 0xFF) << 24 | (out[1] & 0xFF) << 16 | (out[2] & 0xFF) << 8 | (out[3] & 0xFF);
+        }
+
+        static void hex(int bits, byte[] into, int at) {
+            for (int i = 0; i < DERIVED_LENGTH; i++)
+                into[at + i] = hexDigit(bits, i);
+        }
+
+        /** i-th hex digit of the key, most significant first. */
+        static byte hexDigit(int bits, int i) {
+            return HEX[(bits >>> (28 - 4 * i)) & 0xF];
+        }
+
+        /**
+         * Derivers lent out for one derivation each. Not a ThreadLocal: with
+         * virtual threads every request is a new thread, so that would key a
+         * fresh Mac per login and keep it until the thread died. A borrower
+         * that finds the pool empty keys its own, and it is kept only if
+         * there is room, so the pool never holds more than {@code capacity}.
+         */
+        static final class Pool {
+            private final byte[] secret;
+            private final ArrayBlockingQueue<Deriver> idle;
+
+            private Pool(byte[] secret, int capacity) {
+                this.secret = secret;
+                idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+                idle.offer(new Deriver(secret));
+            }
+
+            int derive(String teamId, String nodeId) {
+                Deriver d = idle.poll();
+                if (d == null)
+                    d = new Deriver(secret);
+                int bits = d.derive(teamId, nodeId);
+                idle.offer(d);
+                return bits;
+            }
+        }
+    }
+}
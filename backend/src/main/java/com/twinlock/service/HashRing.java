@@ -0,0 +1,71 @@
+package com.twinlock.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring over the cluster's peers.
+ *
+ * Every peer is placed at many points (hashes of "url#i") so teams spread
+ * evenly, and a team's preference list is the peers met walking clockwise
+ * from the team's own hash, each taken once. Adding or removing a peer only
+ * moves the teams whose walk passes it. The ring is a pure function of the
+ * peer URLs, so every instance given the same list agrees on it without
+ * talking.
+ */
+final class HashRing {
+
+    private static final int POINTS_PER_PEER = 128;
+
+    private final int peerCount;
+    private final long[] points; // sorted
+    private final int[] owners; // peer at points[i]
+
+    HashRing(List<String> peers) {
+        peerCount = peers.size();
+        long[][] placed = new long[peerCount * POINTS_PER_PEER][];
+        int n = 0;
+        for (int p = 0; p < peerCount; p++)
+            for (int i = 0; i < POINTS_PER_PEER; i++)
+                placed[n++] = new long[] { hash(peers.get(p) + "#" + i), p };
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[n];
+        owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = placed[i][0];
+            owners[i] = (int) placed[i][1];
+        }
+    }
+
+    /** Writes every peer, in the key's clockwise order, into {@code out[from .. from + peerCount)}. */
+    void preference(String key, byte[] out, int from) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0)
+            i = -i - 1;
+        long seen = 0L;
+        int k = 0;
+        for (int step = 0; k < peerCount && step < points.length; step++) {
+            int p = owners[(i + step) % points.length];
+            if ((seen & 1L << p) == 0) {
+                seen |= 1L << p;
+                out[from + k++] = (byte) p;
+            }
+        }
+    }
+
+    /** FNV-1a over the UTF-8 bytes, then a 64-bit finalizer so nearby keys land far apart. */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,187 @@
+package com.twinlock.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * One-second timing wheel that releases hints for every node on a single
+ * thread, instead of a timer per node.
+ *
+ * An entry is just a slot number filed under the tick its next hint is due.
+ * The deadline itself is never stored: it is recomputed from the slot's state
+ * word when the bucket comes round, so a level-up, reset or lock that moved
+ * it needs no cancel. Such an entry either finds nothing due (dropped — the
+ * transition filed its own entry) or a deadline on a later turn of the wheel
+ * that still maps to this bucket (kept). Duplicate entries are harmless: the
+ * first to fire releases the hint, and the rest then see the next deadline.
+ *
+ * The wheel turns in window time (EventClock.elapsedMillis), not wall time:
+ * it stands still while the event is paused, and a step in the host's clock
+ * moves nothing. A new window starts window time over at 0; the clock change
+ * rescans every slot, and the wheel rewinds to follow.
+ *
+ * Other threads only append slots to an inbox; buckets are touched by the
+ * wheel thread alone.
+ */
+final class HintWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(HintWheel.class);
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512; // ticks per turn — later deadlines wait out extra turns
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final int slots;
+    private final LongSupplier now; // window time, millis
+    private final IntToLongFunction dueAt; // window time of the slot's next hint, or -1 for none
+    private final IntPredicate release; // releases a due hint; false if there was none to release
+
+    private final int[][] buckets = new int[WHEEL_SIZE][];
+    private final int[] bucketSize = new int[WHEEL_SIZE];
+    private long tick; // last tick fired — wheel thread only
+
+    private final ReentrantLock inboxLock = new ReentrantLock();
+    private int[] inbox = new int[64];
+    private int inboxSize;
+    private int[] spare = new int[64]; // wheel thread only
+    private volatile boolean rescanAll;
+
+    private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "twinlock-hints");
+        t.setDaemon(true);
+        return t;
+    });
+
+    HintWheel(int slots, LongSupplier now, IntToLongFunction dueAt, IntPredicate release) {
+        this.slots = slots;
+        this.now = now;
+        this.dueAt = dueAt;
+        this.release = release;
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            buckets[i] = new int[8];
+    }
+
+    void start() {
+        tick = now.getAsLong() / TICK_MILLIS;
+        thread.scheduleAtFixedRate(this::advance, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        thread.shutdownNow();
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // SCHEDULING — any thread
+    // ════════════════════════════════════════════════════════════════
+
+    /** The slot's next hint deadline may have moved — file it again. */
+    void schedule(int slot) {
+        inboxLock.lock();
+        try {
+            if (inboxSize == inbox.length)
+                inbox = Arrays.copyOf(inbox, inboxSize * 2);
+            inbox[inboxSize++] = slot;
+        } finally {
+            inboxLock.unlock();
+        }
+    }
+
+    /** Every slot's deadline may have moved (the event clock changed). */
+    void scheduleAll() {
+        rescanAll = true;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WHEEL THREAD
+    // ════════════════════════════════════════════════════════════════
+
+    /** One tick; tests drive it directly instead of calling start(). */
+    void advance() {
+        try {
+            long now = this.now.getAsLong();
+            long target = now / TICK_MILLIS;
+            if (target < tick)
+                tick = target - 1; // a new window — window time started over
+            if (rescanAll) {
+                rescanAll = false;
+                for (int slot = 0; slot < slots; slot++)
+                    place(slot, now);
+            }
+            drainInbox(now);
+            // catch up on ticks missed to a stall, but never walk the wheel more than once
+            for (long t = Math.max(tick + 1, target - MASK); t <= target; t++)
+                fire((int) (t & MASK), now);
+            tick = target;
+        } catch (RuntimeException e) {
+            log.error("[HINT] Wheel tick failed", e);
+        }
+    }
+
+    private void drainInbox(long now) {
+        int[] batch;
+        int n;
+        inboxLock.lock();
+        try {
+            batch = inbox;
+            n = inboxSize;
+            inbox = spare.length >= batch.length ? spare : new int[batch.length];
+            inboxSize = 0;
+        } finally {
+            inboxLock.unlock();
+        }
+        for (int i = 0; i < n; i++)
+            place(batch[i], now);
+        spare = batch;
+    }
+
+    private void fire(int bucket, long now) {
+        int[] entries = buckets[bucket];
+        int n = bucketSize[bucket];
+        if (n == 0)
+            return;
+        // detach first — a release may file the slot's next hint into this same bucket
+        buckets[bucket] = new int[Math.max(8, n / 2)];
+        bucketSize[bucket] = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = entries[i];
+            long due = dueAt.applyAsLong(slot);
+            if (due < 0)
+                continue;
+            if (due <= now)
+                place(slot, now);
+            else if (bucketOf(due) == bucket)
+                add(bucket, slot); // a later turn of the wheel
+        }
+    }
+
+    /** Releases whatever is already due, then files the slot under its next deadline. */
+    private void place(int slot, long now) {
+        long due = dueAt.applyAsLong(slot);
+        while (due >= 0 && due <= now && release.test(slot))
+            due = dueAt.applyAsLong(slot);
+        if (due > now)
+            add(bucketOf(due), slot);
+    }
+
+    private void add(int bucket, int slot) {
+        int n = bucketSize[bucket];
+        if (n == buckets[bucket].length)
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], n * 2);
+        buckets[bucket][n] = slot;
+        bucketSize[bucket] = n + 1;
+    }
+
+    /** Rounded up, so a deadline is never filed under a tick that has already fired. */
+    private static int bucketOf(long dueMillis) {
+        return (int) (((dueMillis + TICK_MILLIS - 1) / TICK_MILLIS) & MASK);
+    }
+}
@@ -0,0 +1,77 @@
+package com.twinlock.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal JSON writer for the hot status path. Field names are encoded once
+ * as byte constants; numbers and booleans are written digit by digit straight
+ * into the (already buffered) servlet stream, so a status response allocates
+ * nothing beyond what the container does anyway.
+ */
+final class JsonBytes {
+
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] LONG_MIN = ascii(Long.toString(Long.MIN_VALUE));
+
+    private JsonBytes() {
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Encodes {@code "name":} for use as a field prefix. */
+    static byte[] name(String name) {
+        return ascii("\"" + name + "\":");
+    }
+
+    static void write(OutputStream out, boolean b) throws IOException {
+        out.write(b ? TRUE : FALSE);
+    }
+
+    static void write(OutputStream out, long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            out.write(LONG_MIN);
+            return;
+        }
+        if (v < 0) {
+            out.write('-');
+            v = -v;
+        }
+        long div = 1;
+        while (div <= v / 10)
+            div *= 10;
+        for (; div > 0; div /= 10)
+            out.write((int) ('0' + (v / div) % 10));
+    }
+
+    /** Writes a quoted, escaped JSON string. */
+    static void write(OutputStream out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write('\\');
+                out.write('u');
+                out.write('0');
+                out.write('0');
+                out.write(Character.forDigit(c >> 4, 16));
+                out.write(Character.forDigit(c & 0xF, 16));
+            } else if (c < 0x80) {
+                out.write(c);
+            } else {
+                // rare in node IDs — let the JDK handle multi-byte encoding
+                int n = Character.charCount(s.codePointAt(i));
+                out.write(s.substring(i, i + n).getBytes(StandardCharsets.UTF_8));
+                i += n - 1;
+            }
+        }
+        out.write('"');
+    }
+}
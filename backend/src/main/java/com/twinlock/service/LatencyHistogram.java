@@ -0,0 +1,87 @@
+package com.twinlock.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram, HDR-style: 64 power-of-two ranges
+ * x 16 linear sub-buckets, so any recorded value is reported within ~6%.
+ * Recording is one array increment and one adder; memory is fixed at 8 KB
+ * however many samples arrive.
+ *
+ * A power of two is always a bucket boundary, which is what lets the
+ * Prometheus export use exact {@code le} bounds. Public for the load
+ * generator, which reports its client-side latencies with the same buckets.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+    private final LongAdder sumNanos = new LongAdder();
+
+    public void record(long nanos) {
+        long v = Math.max(1, nanos);
+        counts.incrementAndGet(index(v));
+        sumNanos.add(v);
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /** Copies the buckets out; every figure in one export comes from one copy. */
+    public long[] snapshot() {
+        long[] c = new long[counts.length()];
+        for (int i = 0; i < c.length; i++)
+            c[i] = counts.get(i);
+        return c;
+    }
+
+    public static long count(long[] snapshot) {
+        long n = 0;
+        for (long c : snapshot)
+            n += c;
+        return n;
+    }
+
+    /** Samples below 2^power nanos. */
+    public static long countBelowPowerOfTwo(long[] snapshot, int power) {
+        int end = power <= SUB_BITS ? 1 << power : (power - SUB_BITS + 1) * SUB;
+        long n = 0;
+        for (int i = 0; i < end && i < snapshot.length; i++)
+            n += snapshot[i];
+        return n;
+    }
+
+    /** Upper bound of the bucket holding the q-quantile, in nanos. */
+    public static long quantile(long[] snapshot, long count, double q) {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return upperBound(i);
+        }
+        return upperBound(snapshot.length - 1);
+    }
+
+    private static int index(long v) {
+        int major = 63 - Long.numberOfLeadingZeros(v);
+        if (major < SUB_BITS)
+            return (int) v; // exact below 16 ns
+        int sub = (int) (v >>> (major - SUB_BITS)) & (SUB - 1);
+        return (major - SUB_BITS + 1) * SUB + sub;
+    }
+
+    private static long upperBound(int i) {
+        if (i < SUB)
+            return i;
+        int major = i / SUB + SUB_BITS - 1;
+        int sub = i % SUB;
+        return ((long) (SUB + sub + 1) << (major - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package com.twinlock.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Auto-generated keys derived on first use instead of at startup, so boot
+ * time no longer grows with team-count.
+ *
+ * A derived key is only 32 bits of HMAC, so the memo is a direct-mapped
+ * table of packed words — (slot + 1) in the high half, the key bits in the
+ * low half, 0 = empty — indexed by slot modulo its size. Slots are dense, so
+ * up to cache-size nodes never evict each other; past that a colliding
+ * login simply overwrites the entry and the next one re-derives. Lookups
+ * and inserts are single atomic reads and writes; a race at worst derives
+ * the same key twice.
+ */
+final class LazyCredentials implements CredentialTable {
+
+    private final SessionDirectory directory;
+    private final Deriver.Pool derivers;
+    private final AtomicLongArray memo;
+    private final int mask;
+
+    /** Throws IllegalStateException if the salt cannot key a Mac. */
+    LazyCredentials(String salt, SessionDirectory directory, int cacheSize) {
+        this.directory = directory;
+        derivers = Deriver.pool(salt);
+        int size = Integer.highestOneBit(Math.max(16, Math.min(cacheSize, 1 << 30)));
+        memo = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    @Override
+    public boolean matches(int slot, String candidate) {
+        if (candidate == null || !has(slot))
+            return false;
+        int bits = bits(slot);
+        int n = candidate.length();
+        int diff = DERIVED_LENGTH ^ n;
+        for (int i = 0; i < DERIVED_LENGTH; i++) {
+            int c = i < n ? candidate.charAt(i) : 0;
+            diff |= Deriver.hexDigit(bits, i) ^ c;
+        }
+        return diff == 0;
+    }
+
+    @Override
+    public boolean has(int slot) {
+        return directory.nodeId(slot) != null;
+    }
+
+    /** Derived fresh — a full sheet export would otherwise flush the memo. */
+    @Override
+    public String key(int slot) {
+        if (!has(slot))
+            return null;
+        byte[] hex = new byte[DERIVED_LENGTH];
+        Deriver.hex(derive(slot), hex, 0);
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    private int bits(int slot) {
+        int i = slot & mask;
+        long e = memo.get(i);
+        if ((int) (e >>> 32) == slot + 1)
+            return (int) e;
+        int bits = derive(slot);
+        memo.set(i, (long) (slot + 1) << 32 | (bits & 0xFFFFFFFFL));
+        return bits;
+    }
+
+    private int derive(int slot) {
+        return derivers.derive(directory.teamId(SessionDirectory.teamOf(slot)), directory.nodeId(slot));
+    }
+}
@@ -0,0 +1,186 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Teams ranked by levels cleared over both nodes, kept in order as sessions
+ * move instead of sorted per read.
+ *
+ * Each ranked team is one long in a skip list whose natural order is the
+ * ranking: most levels first, then whoever reached that count earliest
+ * (the event second of the team's latest advance), then roster order. A
+ * transition re-derives its team's key from the two state words and, if it
+ * moved, inserts the new key and drops the old one. Reading the top K walks
+ * the head of the list — O(K) whatever the roster size, and without the
+ * writers' lock.
+ *
+ * {@code keys} holds each team's current key, so a reader passing an entry
+ * its writer has not removed yet skips it; a team moving while a read walks
+ * past may be missed by that one read. Teams with no session are unranked.
+ *
+ * A cluster instance ranks only the teams it owns — one peer's share of the
+ * roster — so filtering the full list would walk about peers × K entries,
+ * and the whole list when few owned teams are ranked. Once ownership is set
+ * the owned teams' keys are also kept in a second list, rebuilt when
+ * membership moves, and their top K is again the head of a list.
+ */
+final class Leaderboard {
+
+    static final int MAX_CLEARED = 6; // three levels on each node
+
+    private static final int SECOND_SHIFT = 41;
+    private static final int BEHIND_SHIFT = 60;
+    private static final long TEAM_MASK = (1L << SECOND_SHIFT) - 1;
+    private static final long UNRANKED = -1L;
+
+    private final SessionDirectory directory;
+    private final ConcurrentSkipListSet<Long> ranking = new ConcurrentSkipListSet<>();
+    private volatile ConcurrentSkipListSet<Long> owned; // null until setOwnership
+    private volatile IntPredicate owns = team -> true;
+    private final AtomicLongArray keys; // by team
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long version;
+    private volatile int ranked; // the set's size() walks it
+
+    Leaderboard(SessionDirectory directory) {
+        this.directory = directory;
+        int teams = (directory.slots() + 1) / 2;
+        keys = new AtomicLongArray(teams);
+        for (int team = 0; team < teams; team++) {
+            keys.set(team, UNRANKED);
+            update(team << 1);
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WRITE SIDE — one call per transition
+    // ════════════════════════════════════════════════════════════════
+
+    void update(int slot) {
+        int team = SessionDirectory.teamOf(slot);
+        lock.lock();
+        try {
+            long key = keyOf(team, word(team << 1), word((team << 1) + 1));
+            long old = keys.get(team);
+            if (key == old)
+                return;
+            ConcurrentSkipListSet<Long> mine = owned;
+            boolean isMine = mine != null && owns.test(team);
+            if (key != UNRANKED) {
+                ranking.add(key);
+                if (isMine)
+                    mine.add(key);
+            }
+            keys.set(team, key);
+            if (old != UNRANKED) {
+                ranking.remove(old);
+                if (mine != null)
+                    mine.remove(old);
+            }
+            ranked += (key != UNRANKED ? 1 : 0) - (old != UNRANKED ? 1 : 0);
+            version++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long word(int slot) {
+        if (slot >= directory.slots())
+            return 0L;
+        NodeSession s = directory.view(slot);
+        return s == null ? 0L : s.state();
+    }
+
+    private static long keyOf(int team, long node1, long node2) {
+        if (node1 == 0L && node2 == 0L)
+            return UNRANKED;
+        int cleared = cleared(node1) + cleared(node2);
+        int second = Math.max(advanceSecond(node1), advanceSecond(node2));
+        return (long) (MAX_CLEARED - cleared) << BEHIND_SHIFT | (long) second << SECOND_SHIFT | team;
+    }
+
+    private static int cleared(long st) {
+        if (st == 0L)
+            return 0;
+        return NodeSession.unlocked(st) ? 3 : NodeSession.level(st) - 1;
+    }
+
+    /** Event second of the node's latest advance; 0 if it has not cleared anything. */
+    private static int advanceSecond(long st) {
+        return cleared(st) == 0 ? 0 : NodeSession.enteredAt(st);
+    }
+
+    /**
+     * Starts, or rebuilds, the owned-teams list — call when the teams this
+     * instance owns may have changed. O(ranked teams) under the writers' lock.
+     */
+    void setOwnership(IntPredicate ownsTeam) {
+        lock.lock();
+        try {
+            ConcurrentSkipListSet<Long> mine = new ConcurrentSkipListSet<>();
+            for (int team = 0; team < keys.length(); team++) {
+                long key = keys.get(team);
+                if (key != UNRANKED && ownsTeam.test(team))
+                    mine.add(key);
+            }
+            owns = ownsTeam;
+            owned = mine;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // READ SIDE
+    // ════════════════════════════════════════════════════════════════
+
+    long version() {
+        return version;
+    }
+
+    /** Ranked team count. */
+    int size() {
+        return ranked;
+    }
+
+    /**
+     * Fills {@code out} with the keys of the best-ranked teams, best first —
+     * only those this instance owns if {@code ownedOnly} and ownership is
+     * set; returns how many.
+     */
+    int top(long[] out, boolean ownedOnly) {
+        ConcurrentSkipListSet<Long> mine = owned;
+        boolean filter = ownedOnly && mine != null;
+        IntPredicate ownsTeam = owns;
+        int n = 0;
+        Iterator<Long> it = (filter ? mine : ranking).iterator();
+        while (n < out.length && it.hasNext()) {
+            long key = it.next();
+            int team = team(key);
+            // ownership re-checked: a team lost since the last rebuild leaves at the next one
+            if (keys.get(team) == key && (!filter || ownsTeam.test(team)))
+                out[n++] = key;
+        }
+        return n;
+    }
+
+    // ── Key decoding ──────────────────────────────────────────────
+    static int team(long key) {
+        return (int) (key & TEAM_MASK);
+    }
+
+    static int levelsCleared(long key) {
+        return MAX_CLEARED - (int) (key >>> BEHIND_SHIFT);
+    }
+
+    /** Event second the team reached its count. */
+    static int lastAdvanceAt(long key) {
+        return (int) ((key >>> SECOND_SHIFT) & NodeSession.MAX_ENTERED_AT);
+    }
+}
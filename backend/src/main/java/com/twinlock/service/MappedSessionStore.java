@@ -0,0 +1,145 @@
+package com.twinlock.service;
+
+import com.twinlock.model.EventClock;
+import com.twinlock.model.SessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Off-heap SessionStore backed by a fixed-record memory-mapped file.
+ *
+ * Every slot is one aligned 8-byte state word, read and CAS'd in place
+ * through a VarHandle view of the mapped buffer — no serializer and no heap
+ * objects per node. Writes land in the OS page cache immediately, so the
+ * table survives the JVM dying (not the host losing power; {@link #flush()}
+ * forces it to disk on orderly shutdown).
+ *
+ * Layout: 64-byte header then {@code slots} x 8-byte words.
+ * header: magic, version, slots, rosterHash, then the event clock —
+ * originEpochMillis, flags (1 started, 2 paused), pausedAtMillis,
+ * extensionMillis; files from before pause/extend read as neither paused nor
+ * extended.
+ * A file whose slot count or roster hash doesn't match the current
+ * credentials is wiped rather than misread.
+ */
+class MappedSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedSessionStore.class);
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private static final int MAGIC = 0x544C4D31; // "TLM1"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int OFF_SLOTS = 8;
+    private static final int OFF_ROSTER = 12;
+    private static final int OFF_EVENT_START = 16;
+    private static final int OFF_EVENT_FLAGS = 24;
+    private static final int OFF_EVENT_PAUSED_AT = 32;
+    private static final int OFF_EVENT_EXTENSION = 40;
+    private static final long FLAG_STARTED = 1L;
+    private static final long FLAG_PAUSED = 2L;
+
+    private final MappedByteBuffer buf;
+    private final int slots;
+
+    private MappedSessionStore(MappedByteBuffer buf, int slots) {
+        this.buf = buf;
+        this.slots = slots;
+    }
+
+    static MappedSessionStore open(Path file, int slots, int rosterHash) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        long size = HEADER + 8L * slots;
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buf.order(ByteOrder.nativeOrder());
+        MappedSessionStore store = new MappedSessionStore(buf, slots);
+        boolean matches = buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION
+                && buf.getInt(OFF_SLOTS) == slots && buf.getInt(OFF_ROSTER) == rosterHash;
+        if (!matches) {
+            if (buf.getInt(0) == MAGIC)
+                log.warn("[STORE] {} was written for a different roster — wiping it.", file);
+            store.format(rosterHash);
+        }
+        return store;
+    }
+
+    private void format(int rosterHash) {
+        for (int i = HEADER; i < buf.capacity(); i += 8)
+            buf.putLong(i, 0L);
+        buf.putLong(OFF_EVENT_START, -1L);
+        buf.putLong(OFF_EVENT_FLAGS, 0L);
+        buf.putLong(OFF_EVENT_PAUSED_AT, 0L);
+        buf.putLong(OFF_EVENT_EXTENSION, 0L);
+        buf.putInt(OFF_SLOTS, slots);
+        buf.putInt(OFF_ROSTER, rosterHash);
+        buf.putInt(4, VERSION);
+        buf.putInt(0, MAGIC); // last — a torn format is re-run on next open
+        buf.force();
+    }
+
+    private static int offset(int slot) {
+        return HEADER + (slot << 3);
+    }
+
+    @Override
+    public int slots() {
+        return slots;
+    }
+
+    @Override
+    public long get(int slot) {
+        return (long) LONGS.getVolatile(buf, offset(slot));
+    }
+
+    @Override
+    public void set(int slot, long state) {
+        LONGS.setVolatile(buf, offset(slot), state);
+    }
+
+    @Override
+    public boolean compareAndSet(int slot, long expect, long update) {
+        return LONGS.compareAndSet(buf, offset(slot), expect, update);
+    }
+
+    @Override
+    public void putEventState(EventClock.State clock) {
+        LONGS.setVolatile(buf, OFF_EVENT_PAUSED_AT, clock.getPausedAtMillis());
+        LONGS.setVolatile(buf, OFF_EVENT_EXTENSION, clock.getExtensionMillis());
+        LONGS.setVolatile(buf, OFF_EVENT_START, clock.getOriginEpochMillis());
+        LONGS.setVolatile(buf, OFF_EVENT_FLAGS,
+                (clock.isStarted() ? FLAG_STARTED : 0L) | (clock.isPaused() ? FLAG_PAUSED : 0L));
+    }
+
+    @Override
+    public EventClock.State eventState() {
+        long origin = (long) LONGS.getVolatile(buf, OFF_EVENT_START);
+        if (origin < 0)
+            return null;
+        long flags = (long) LONGS.getVolatile(buf, OFF_EVENT_FLAGS);
+        return EventClock.State.restored((flags & FLAG_STARTED) != 0, (flags & FLAG_PAUSED) != 0, origin,
+                (long) LONGS.getVolatile(buf, OFF_EVENT_PAUSED_AT),
+                (long) LONGS.getVolatile(buf, OFF_EVENT_EXTENSION));
+    }
+
+    @Override
+    public void flush() {
+        buf.force();
+    }
+}
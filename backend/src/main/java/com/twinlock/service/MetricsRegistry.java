@@ -0,0 +1,296 @@
+package com.twinlock.service;
+
+import com.twinlock.model.EventClock;
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics, exported in the Prometheus text format.
+ *
+ * Every request is timed into a {@link LatencyHistogram} for its controller
+ * method, found by identity of the Method in a map that is only written the
+ * first time an endpoint is hit. Domain counters are LongAdders fed by the
+ * SessionEvent stream and by the submit endpoint. Nothing is aggregated on
+ * the request path: quantiles, bucket sums and the poller count are worked
+ * out when the scrape asks for them.
+ *
+ * Active pollers are nodes that fetched their status in the last few
+ * seconds. A poll stores the current second into the node's slot only if it
+ * differs, so steady polling writes each slot at most once a second.
+ */
+@Service
+public class MetricsRegistry {
+
+    // exported bucket bounds: 2^10 ns (~1 µs) to 2^34 ns (~17 s), x4 apart
+    private static final int FIRST_POWER = 10;
+    private static final int LAST_POWER = 34;
+    private static final int POWER_STEP = 2;
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final String[] SUBMIT_OUTCOMES = { "UNLOCK", "LEVEL_UP", "FAIL", "LOCKED", "RATE_LIMITED", "OTHER" };
+    private static final String[] CODE_CLASSES = { "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+    @Value("${twinlock.metrics.poller-window-seconds:10}")
+    private int pollerWindowSeconds;
+
+    private final TwinLockService service;
+    private final NodeStreamService streams;
+    private final ClusterService cluster;
+    private final AuditLog audit;
+    private final SessionJournal journal;
+
+    private final ConcurrentHashMap<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Endpoint unmatched = new Endpoint("unmatched");
+
+    private final LongAdder[] submits = adders(SUBMIT_OUTCOMES.length);
+    private final LongAdder[] sessionEvents = adders(SessionEvent.Type.values().length);
+    private final LongAdder[] levelsCleared = adders(3); // index = level - 1
+
+    private final long origin = System.nanoTime();
+    private volatile int second = 1; // seconds since start, from 1 — 0 marks "never polled"
+    private int[] lastPoll; // by slot — racy plain writes, a lost one only delays a node by a poll
+
+    /** One controller method's traffic. */
+    private static final class Endpoint {
+        final String label;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder[] byCodeClass = adders(CODE_CLASSES.length);
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    public MetricsRegistry(TwinLockService service, NodeStreamService streams, ClusterService cluster, AuditLog audit,
+            SessionJournal journal) {
+        this.service = service;
+        this.streams = streams;
+        this.cluster = cluster;
+        this.audit = audit;
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void init() {
+        lastPoll = new int[service.slotCount()];
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // RECORDING — request path
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * @param handler the controller method that served the request, or null
+     * @param httpMethod with pattern, labels the endpoint the first time it is seen
+     */
+    public void recordRequest(Method handler, String httpMethod, String pattern, int status, long nanos) {
+        Endpoint e = unmatched;
+        if (handler != null) {
+            e = endpoints.get(handler);
+            if (e == null)
+                e = endpoints.computeIfAbsent(handler, h -> new Endpoint(httpMethod + " "
+                        + (pattern != null ? pattern : h.getDeclaringClass().getSimpleName() + "." + h.getName())));
+        }
+        e.latency.record(nanos);
+        e.byCodeClass[Math.min(Math.max(status / 100, 1), 5) - 1].increment();
+    }
+
+    public void polled(int slot) {
+        if (slot < 0)
+            return;
+        int now = second;
+        if (lastPoll[slot] != now)
+            lastPoll[slot] = now;
+    }
+
+    /** Counts a submit by the status it answered with. */
+    public void submitted(Object status) {
+        int i = SUBMIT_OUTCOMES.length - 1;
+        for (int k = 0; k < i; k++)
+            if (SUBMIT_OUTCOMES[k].equals(status)) {
+                i = k;
+                break;
+            }
+        submits[i].increment();
+    }
+
+    @EventListener
+    public void onSessionEvent(SessionEvent e) {
+        sessionEvents[e.getType().ordinal()].increment();
+        if (e.getType() == SessionEvent.Type.UNLOCK) {
+            levelsCleared[2].increment();
+        } else if (e.getType() == SessionEvent.Type.LEVEL_UP) {
+            // the word the level-up installed: a later transition can't shift the count
+            levelsCleared[Math.max(1, Math.min(NodeSession.level(e.getState()) - 1, 3)) - 1].increment();
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        second = 1 + (int) ((System.nanoTime() - origin) / 1_000_000_000L);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // EXPORT — Prometheus text format 0.0.4
+    // ════════════════════════════════════════════════════════════════
+
+    public void writePrometheus(OutputStream out) throws IOException {
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        List<Endpoint> eps = new ArrayList<>(endpoints.values());
+        eps.sort(Comparator.comparing(e -> e.label));
+        if (LatencyHistogram.count(unmatched.latency.snapshot()) > 0)
+            eps.add(unmatched);
+
+        family(sb, "twinlock_http_requests_total", "counter", "Requests served, by endpoint and status class.");
+        for (Endpoint e : eps)
+            for (int c = 0; c < CODE_CLASSES.length; c++) {
+                long n = e.byCodeClass[c].sum();
+                if (n > 0)
+                    sample(sb, "twinlock_http_requests_total", n, "endpoint", e.label, "code", CODE_CLASSES[c]);
+            }
+
+        family(sb, "twinlock_http_request_duration_seconds", "histogram",
+                "Time from the request reaching the app to the handler returning.");
+        long[][] snaps = new long[eps.size()][];
+        for (int i = 0; i < eps.size(); i++) {
+            Endpoint e = eps.get(i);
+            long[] snap = snaps[i] = e.latency.snapshot();
+            for (int p = FIRST_POWER; p <= LAST_POWER; p += POWER_STEP)
+                sample(sb, "twinlock_http_request_duration_seconds_bucket",
+                        LatencyHistogram.countBelowPowerOfTwo(snap, p),
+                        "endpoint", e.label, "le", Double.toString((1L << p) / 1e9));
+            long count = LatencyHistogram.count(snap);
+            sample(sb, "twinlock_http_request_duration_seconds_bucket", count, "endpoint", e.label, "le", "+Inf");
+            sample(sb, "twinlock_http_request_duration_seconds_sum", e.latency.sumNanos() / 1e9, "endpoint", e.label);
+            sample(sb, "twinlock_http_request_duration_seconds_count", count, "endpoint", e.label);
+        }
+
+        family(sb, "twinlock_http_request_duration_quantile_seconds", "gauge",
+                "Latency quantiles since start, from the full-resolution histogram (~6%).");
+        for (int i = 0; i < eps.size(); i++) {
+            long count = LatencyHistogram.count(snaps[i]);
+            for (double q : QUANTILES)
+                sample(sb, "twinlock_http_request_duration_quantile_seconds",
+                        LatencyHistogram.quantile(snaps[i], count, q) / 1e9,
+                        "endpoint", eps.get(i).label, "quantile", Double.toString(q));
+        }
+
+        family(sb, "twinlock_submits_total", "counter", "Submits, by the status answered.");
+        for (int i = 0; i < SUBMIT_OUTCOMES.length; i++)
+            sample(sb, "twinlock_submits_total", submits[i].sum(), "outcome", SUBMIT_OUTCOMES[i]);
+
+        family(sb, "twinlock_session_events_total", "counter", "Session and event-state transitions.");
+        for (SessionEvent.Type t : SessionEvent.Type.values())
+            sample(sb, "twinlock_session_events_total", sessionEvents[t.ordinal()].sum(), "type", t.name());
+
+        family(sb, "twinlock_levels_cleared_total", "counter", "Levels solved (level 3 = unlock).");
+        for (int i = 0; i < levelsCleared.length; i++)
+            sample(sb, "twinlock_levels_cleared_total", levelsCleared[i].sum(), "level", Integer.toString(i + 1));
+
+        family(sb, "twinlock_active_pollers", "gauge",
+                "Nodes that polled their status in the last " + pollerWindowSeconds + " s.");
+        sample(sb, "twinlock_active_pollers", activePollers());
+        family(sb, "twinlock_open_streams", "gauge", "Open SSE status streams and node sockets.");
+        sample(sb, "twinlock_open_streams", streams.openStreams());
+
+        if (cluster.isEnabled()) {
+            family(sb, "twinlock_cluster_live_peers", "gauge", "Cluster instances answering heartbeats, this one included.");
+            sample(sb, "twinlock_cluster_live_peers", cluster.livePeers().size());
+        }
+
+        if (journal.isEnabled()) {
+            family(sb, "twinlock_journal_dropped_total", "counter",
+                    "Journal records lost to a full queue or a failed write.");
+            sample(sb, "twinlock_journal_dropped_total", journal.droppedCount());
+        }
+
+        if (audit.isEnabled()) {
+            family(sb, "twinlock_audit_records_total", "counter", "Audit records written to disk.");
+            sample(sb, "twinlock_audit_records_total", audit.writtenCount());
+            family(sb, "twinlock_audit_dropped_total", "counter", "Audit records dropped because the buffer was full.");
+            sample(sb, "twinlock_audit_dropped_total", audit.droppedCount());
+            family(sb, "twinlock_audit_backlog", "gauge", "Audit records buffered and not yet written.");
+            sample(sb, "twinlock_audit_backlog", audit.backlog());
+        }
+
+        long clk = service.getEventClockReading();
+        family(sb, "twinlock_event_open", "gauge", "1 while the decryption window is open.");
+        sample(sb, "twinlock_event_open", EventClock.open(clk) ? 1 : 0);
+        family(sb, "twinlock_event_paused", "gauge", "1 while the decryption window is paused.");
+        sample(sb, "twinlock_event_paused", EventClock.paused(clk) ? 1 : 0);
+        family(sb, "twinlock_event_remaining_seconds", "gauge", "Time left in the window.");
+        sample(sb, "twinlock_event_remaining_seconds", EventClock.remainingSeconds(clk));
+
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int activePollers() {
+        int since = second - pollerWindowSeconds;
+        int n = 0;
+        for (int t : lastPoll)
+            if (t != 0 && t > since)
+                n++;
+        return n;
+    }
+
+    // ── Text format ───────────────────────────────────────────────
+    private static void family(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, double value, String... labels) {
+        sb.append(name);
+        if (labels.length > 0) {
+            sb.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(labels[i]).append("=\"");
+                escape(sb, labels[i + 1]);
+                sb.append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == (long) value)
+            sb.append((long) value);
+        else
+            sb.append(value);
+        sb.append('\n');
+    }
+
+    private static void escape(StringBuilder sb, String v) {
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '\\' || c == '"')
+                sb.append('\\').append(c);
+            else if (c == '\n')
+                sb.append("\\n");
+            else
+                sb.append(c);
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++)
+            a[i] = new LongAdder();
+        return a;
+    }
+}
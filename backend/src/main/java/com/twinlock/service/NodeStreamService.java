@@ -0,0 +1,327 @@
+package com.twinlock.service;
+
+import com.twinlock.model.SessionEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Push hub for terminals — Server-Sent Events streams and WebSockets alike.
+ *
+ * Each connected terminal is a {@link Channel} subscribed to its node. A
+ * node's subscribers receive a status whenever that node, its partner, or the
+ * event state changes, and a lightweight tick once per second while the
+ * decryption window is open. How a channel frames those is its own business:
+ * an SSE stream writes named events, a socket writes compact frames.
+ *
+ * All pushes are handed out on one platform thread, never on the request
+ * thread that caused them — a submit shouldn't wait on other terminals'
+ * sockets — and one thread keeps every channel's events in order, so a
+ * channel never sees two calls at once. Handing out must never block, since
+ * every terminal waits behind it: a channel only records what is due and
+ * writes it elsewhere. An SSE stream writes on a small writer pool (the
+ * blocking SseEmitter.send holds the emitter's monitor across the socket
+ * write, which would also pin a virtual-thread carrier); a socket writes
+ * asynchronously. Both keep one write in flight and coalesce what arrives
+ * meanwhile — only the newest status and tick are kept — and a stream whose
+ * write has been stuck for SLOW_MILLIS is dropped.
+ */
+@Service
+public class NodeStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeStreamService.class);
+
+    // idle keep-alive so proxies don't drop streams before the event starts
+    private static final int PING_EVERY_TICKS = 15;
+    // a client this far behind on one write is not reading — drop it
+    private static final long SLOW_MILLIS = 5000;
+    // threads writing SSE events; one stuck client holds one until the container's write timeout
+    private static final int SSE_WRITERS = 32;
+
+    @Value("${twinlock.stream-timeout-minutes:60}")
+    private long streamTimeoutMinutes;
+
+    private final TwinLockService service;
+    private final ConcurrentHashMap<String, Set<Subscriber>> byTeam = new ConcurrentHashMap<>();
+    private final ExecutorService pusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "twinlock-stream");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ThreadPoolExecutor writers = new ThreadPoolExecutor(SSE_WRITERS, SSE_WRITERS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "twinlock-sse");
+                t.setDaemon(true);
+                return t;
+            });
+    private volatile boolean lastActive = false;
+    private int idleTicks = 0; // pusher thread only
+
+    /**
+     * One connected terminal, whatever carries it. Called on the push thread
+     * only, and must return without waiting on the client; an IOException
+     * unsubscribes the channel.
+     */
+    public interface Channel {
+        /** The node's full status body, as /api/node/status writes it. */
+        void status(byte[] json) throws IOException;
+
+        /** {@code json} is { timeRemainingSeconds }, encoded once per tick for every channel. */
+        void tick(long timeRemainingSeconds, byte[] json) throws IOException;
+
+        /** Keep-alive while nothing else is sent. */
+        void ping() throws IOException;
+    }
+
+    private static final class Subscriber {
+        final int slot;
+        final Channel channel;
+
+        Subscriber(int slot, Channel channel) {
+            this.slot = slot;
+            this.channel = channel;
+        }
+    }
+
+    public NodeStreamService(TwinLockService service) {
+        this.service = service;
+        writers.allowCoreThreadTimeOut(true);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // SUBSCRIBE
+    // ════════════════════════════════════════════════════════════════
+
+    /** Raw IDs, resolved like any other node request. */
+    public SseEmitter open(String rawTeamId, String rawNodeId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        int slot = service.resolve(rawTeamId, rawNodeId);
+        Channel channel = new SseChannel(emitter);
+        if (slot == SessionDirectory.NONE) {
+            // not on the roster — one unauthenticated status and done
+            writers.execute(() -> {
+                try {
+                    emitter.send(SseEmitter.event().name("status")
+                            .data(service.nodeStatusJson(slot), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("[STREAM] Dropped unknown node: {}", e.getMessage());
+                }
+            });
+            return emitter;
+        }
+        attach(slot, channel);
+        emitter.onCompletion(() -> detach(slot, channel));
+        emitter.onTimeout(() -> detach(slot, channel));
+        emitter.onError(e -> detach(slot, channel));
+        return emitter;
+    }
+
+    /**
+     * Subscribes the channel to a node on the roster; its first status goes
+     * out straight away, so the client never has to poll first.
+     */
+    public void attach(int slot, Channel channel) {
+        String teamId = service.teamIdOf(slot);
+        Subscriber sub = new Subscriber(slot, channel);
+        byTeam.computeIfAbsent(teamId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        pusher.execute(() -> pushStatus(teamId, sub));
+    }
+
+    public void detach(int slot, Channel channel) {
+        String teamId = service.teamIdOf(slot);
+        Set<Subscriber> team = byTeam.get(teamId);
+        if (team == null)
+            return;
+        for (Subscriber sub : team)
+            if (sub.channel == channel)
+                remove(teamId, sub);
+    }
+
+    public int openStreams() {
+        int n = 0;
+        for (Set<Subscriber> team : byTeam.values())
+            n += team.size();
+        return n;
+    }
+
+    private void remove(String teamId, Subscriber sub) {
+        byTeam.computeIfPresent(teamId, (k, team) -> {
+            team.remove(sub);
+            return team.isEmpty() ? null : team;
+        });
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // PUSH
+    // ════════════════════════════════════════════════════════════════
+
+    @EventListener
+    public void onSessionEvent(SessionEvent e) {
+        pusher.execute(() -> fanOut(e));
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        pusher.execute(this::pushTick);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pusher.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private void fanOut(SessionEvent e) {
+        if (e.isEventWide()) {
+            lastActive = service.isActive();
+            byTeam.forEach((teamId, team) -> team.forEach(sub -> pushStatus(teamId, sub)));
+            return;
+        }
+        // a node change is also a partner change — refresh the whole team
+        Set<Subscriber> team = byTeam.get(e.getTeamId());
+        if (team != null)
+            team.forEach(sub -> pushStatus(e.getTeamId(), sub));
+    }
+
+    private void pushTick() {
+        boolean active = service.isActive();
+        if (active != lastActive) {
+            // window closed by the clock rather than by an admin — no SessionEvent fires
+            fanOut(SessionEvent.eventWide(
+                    active ? SessionEvent.Type.EVENT_START : SessionEvent.Type.EVENT_END));
+            return;
+        }
+        if (!active) {
+            if (++idleTicks % PING_EVERY_TICKS == 0)
+                byTeam.forEach((teamId, team) -> team.forEach(sub -> send(teamId, sub, Channel::ping)));
+            return;
+        }
+        long remaining = service.getTimeRemainingSeconds();
+        byte[] json = ("{\"timeRemainingSeconds\":" + remaining + "}").getBytes(StandardCharsets.US_ASCII);
+        byTeam.forEach((teamId, team) -> team.forEach(sub -> send(teamId, sub, ch -> ch.tick(remaining, json))));
+    }
+
+    private void pushStatus(String teamId, Subscriber sub) {
+        byte[] status = service.nodeStatusJson(sub.slot);
+        send(teamId, sub, ch -> ch.status(status));
+    }
+
+    private interface Push {
+        void to(Channel channel) throws IOException;
+    }
+
+    private void send(String teamId, Subscriber sub, Push push) {
+        try {
+            push.to(sub.channel);
+        } catch (IOException | IllegalStateException e) {
+            // client went away; the container closes the connection on its own
+            log.debug("[STREAM] Dropped {} slot {}: {}", teamId, sub.slot, e.getMessage());
+            remove(teamId, sub);
+        }
+    }
+
+    // ── SSE transport ─────────────────────────────────────────────
+    private final class SseChannel implements Channel {
+        final SseEmitter emitter;
+        final AtomicReference<byte[]> pendingStatus = new AtomicReference<>();
+        final AtomicReference<byte[]> pendingTick = new AtomicReference<>();
+        final AtomicBoolean pendingPing = new AtomicBoolean();
+        final AtomicBoolean writing = new AtomicBoolean(); // a drain is queued or running
+        volatile long writeStarted; // nanoTime the current write began
+        volatile boolean failed;
+
+        SseChannel(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void status(byte[] json) throws IOException {
+            requireHealthy();
+            pendingStatus.set(json);
+            schedule();
+        }
+
+        @Override
+        public void tick(long timeRemainingSeconds, byte[] json) throws IOException {
+            requireHealthy();
+            pendingTick.set(json);
+            schedule();
+        }
+
+        @Override
+        public void ping() throws IOException {
+            requireHealthy();
+            pendingPing.set(true);
+            schedule();
+        }
+
+        private void requireHealthy() throws IOException {
+            if (failed)
+                throw new IOException("stream failed");
+            if (writing.get() && System.nanoTime() - writeStarted > TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS)) {
+                failed = true;
+                emitter.completeWithError(new IOException("client not reading"));
+                throw new IOException("write stuck for over " + SLOW_MILLIS + " ms");
+            }
+        }
+
+        private void schedule() {
+            if (writing.compareAndSet(false, true)) {
+                writeStarted = System.nanoTime();
+                writers.execute(this::drain);
+            }
+        }
+
+        /** Writer pool: sends until nothing is due, newest status and tick first. */
+        private void drain() {
+            try {
+                while (true) {
+                    byte[] status = pendingStatus.getAndSet(null);
+                    byte[] tick = status == null ? pendingTick.getAndSet(null) : null;
+                    boolean ping = status == null && tick == null && pendingPing.getAndSet(false);
+                    if (status == null && tick == null && !ping) {
+                        writing.set(false);
+                        // something may have arrived between the checks and the release
+                        if (!due() || !writing.compareAndSet(false, true))
+                            return;
+                        continue;
+                    }
+                    writeStarted = System.nanoTime();
+                    if (status != null)
+                        emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                    else if (tick != null)
+                        emitter.send(SseEmitter.event().name("tick").data(tick, MediaType.APPLICATION_JSON));
+                    else
+                        emitter.send(SseEmitter.event().comment("ping"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // client went away; the hub unsubscribes it on the next push
+                failed = true;
+                writing.set(false);
+            }
+        }
+
+        private boolean due() {
+            return pendingStatus.get() != null || pendingTick.get() != null || pendingPing.get();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.twinlock.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token-bucket throttle for login and submit, per client address and per
+ * node slot.
+ *
+ * Each bucket is a single long — the time at which it would be full again
+ * (GCRA). Admitting a request moves that time one interval forward, and is
+ * refused if it would land more than {@code burst} intervals ahead of now;
+ * one CAS either way, no locks. Node buckets sit in an array by slot. Address
+ * buckets live in a map and are dropped once full again — an idle bucket
+ * carries no state, so eviction never lets anyone through early.
+ *
+ * Times are nanos since construction, so 0 means "full".
+ */
+@Service
+public class RateLimiter {
+
+    @Value("${twinlock.rate-limit.enabled:true}")
+    private boolean enabled;
+    @Value("${twinlock.rate-limit.ip-per-minute:600}")
+    private int ipPerMinute;
+    @Value("${twinlock.rate-limit.ip-burst:300}")
+    private int ipBurst;
+    @Value("${twinlock.rate-limit.node-per-minute:30}")
+    private int nodePerMinute;
+    @Value("${twinlock.rate-limit.node-burst:10}")
+    private int nodeBurst;
+
+    private final TwinLockService service;
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, AtomicLong> byAddress = new ConcurrentHashMap<>();
+    private AtomicLongArray bySlot;
+    private long ipInterval, ipTolerance;
+    private long nodeInterval, nodeTolerance;
+
+    public RateLimiter(TwinLockService service) {
+        this.service = service;
+    }
+
+    @PostConstruct
+    public void init() {
+        bySlot = new AtomicLongArray(service.slotCount());
+        ipInterval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, ipPerMinute);
+        ipTolerance = ipInterval * Math.max(1, ipBurst);
+        nodeInterval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, nodePerMinute);
+        nodeTolerance = nodeInterval * Math.max(1, nodeBurst);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // ADMISSION — 0 = go ahead, else nanos until a retry would pass
+    // ════════════════════════════════════════════════════════════════
+
+    public long admitAddress(String address) {
+        if (!enabled || address == null)
+            return 0;
+        AtomicLong bucket = byAddress.get(address);
+        if (bucket == null)
+            bucket = byAddress.computeIfAbsent(address, a -> new AtomicLong());
+        long now = now();
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + ipInterval;
+            if (next - now > ipTolerance)
+                return next - now - ipTolerance;
+            if (bucket.compareAndSet(tat, next))
+                return 0;
+        }
+    }
+
+    /** Unknown nodes are admitted — only the address bucket applies to them. */
+    public long admitNode(String rawTeamId, String rawNodeId) {
+        return enabled ? admitSlot(service.resolve(rawTeamId, rawNodeId)) : 0;
+    }
+
+    /** As above for an already-resolved slot. */
+    public long admitSlot(int slot) {
+        if (!enabled || slot == SessionDirectory.NONE)
+            return 0;
+        long now = now();
+        while (true) {
+            long tat = bySlot.get(slot);
+            long next = Math.max(tat, now) + nodeInterval;
+            if (next - now > nodeTolerance)
+                return next - now - nodeTolerance;
+            if (bySlot.compareAndSet(slot, tat, next))
+                return 0;
+        }
+    }
+
+    /** Response body for a refused request. */
+    public static Map<String, Object> rejection(long waitNanos) {
+        return Map.of(
+                "status", "RATE_LIMITED",
+                "message", "Too many requests — slow down.",
+                "retryAfterSeconds", retryAfterSeconds(waitNanos));
+    }
+
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // EVICTION
+    // ════════════════════════════════════════════════════════════════
+
+    @Scheduled(fixedRate = 30_000)
+    public void evictIdle() {
+        long now = now();
+        // a request racing the removal may lose its one token — harmless
+        byAddress.values().removeIf(bucket -> bucket.get() <= now);
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+}
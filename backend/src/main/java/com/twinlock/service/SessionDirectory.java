@@ -0,0 +1,150 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionStore;
+
+import java.util.List;
+
+/**
+ * Interned roster: every credentialed team gets a small integer index at
+ * startup and every node a slot = team x 2 + (0 for the *-01 node, 1 for the
+ * other), so a node's partner is {@code slot ^ 1}. Slots are also the
+ * SessionStore slots, and each one has a single NodeSession view created up
+ * front — a session is live once its state word is non-zero.
+ *
+ * Lookups take the raw request strings and match them ignoring ASCII case
+ * and surrounding whitespace, without allocating: the team table is
+ * open-addressed on a case-folded hash of the trimmed range and the node is
+ * one of the team's two IDs. Canonical (already upper-case) input takes the
+ * exact-compare fast path.
+ */
+final class SessionDirectory {
+
+    static final int NONE = -1;
+
+    private final String[] teamIds;
+    private final String[] nodeIds; // by slot; null = no credential in that slot
+    private final NodeSession[] views; // by slot
+    // open-addressed team table: index + 1 per bucket, 0 = empty
+    private final int[] buckets;
+    private final int shift;
+
+    /** {@code nodeIds} is indexed by slot — two entries per team, in roster order. */
+    SessionDirectory(List<String> teamIds, String[] nodeIds, SessionStore store) {
+        this.teamIds = teamIds.toArray(new String[0]);
+        this.nodeIds = nodeIds;
+        views = new NodeSession[nodeIds.length];
+        for (int slot = 0; slot < nodeIds.length; slot++)
+            if (nodeIds[slot] != null)
+                views[slot] = NodeSession.attach(this.teamIds[slot >> 1], nodeIds[slot], store, slot);
+
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, this.teamIds.length * 2 - 1));
+        buckets = new int[1 << bits];
+        shift = 32 - bits;
+        int mask = buckets.length - 1;
+        for (int t = 0; t < this.teamIds.length; t++) {
+            String id = this.teamIds[t];
+            int b = bucket(id, 0, id.length());
+            while (buckets[b] != 0)
+                b = (b + 1) & mask;
+            buckets[b] = t + 1;
+        }
+    }
+
+    // ── Resolution ────────────────────────────────────────────────
+
+    /** Team index for a raw team ID, or NONE. */
+    int team(String raw) {
+        if (raw == null)
+            return NONE;
+        int start = 0, end = raw.length();
+        while (start < end && raw.charAt(start) <= ' ')
+            start++;
+        while (end > start && raw.charAt(end - 1) <= ' ')
+            end--;
+        int len = end - start;
+        int mask = buckets.length - 1;
+        for (int b = bucket(raw, start, end);; b = (b + 1) & mask) {
+            int t = buckets[b] - 1;
+            if (t < 0)
+                return NONE;
+            if (matches(teamIds[t], raw, start, len))
+                return t;
+        }
+    }
+
+    /** Slot for a raw team/node pair, or NONE if either is unknown. */
+    int slot(String rawTeam, String rawNode) {
+        int t = team(rawTeam);
+        if (t == NONE || rawNode == null)
+            return NONE;
+        int start = 0, end = rawNode.length();
+        while (start < end && rawNode.charAt(start) <= ' ')
+            start++;
+        while (end > start && rawNode.charAt(end - 1) <= ' ')
+            end--;
+        for (int slot = t << 1; slot <= (t << 1 | 1); slot++) {
+            String id = nodeIds[slot];
+            if (id != null && matches(id, rawNode, start, end - start))
+                return slot;
+        }
+        return NONE;
+    }
+
+    private static boolean matches(String id, String raw, int start, int len) {
+        return id.length() == len
+                && (id.regionMatches(0, raw, start, len) || id.regionMatches(true, 0, raw, start, len));
+    }
+
+    /** Fibonacci-hashed bucket of the ASCII upper-cased range. */
+    private int bucket(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            h = 31 * h + (c >= 'a' && c <= 'z' ? c - 32 : c);
+        }
+        return (h * 0x9E3779B9) >>> shift;
+    }
+
+    // ── Slot accessors ────────────────────────────────────────────
+
+    int teams() {
+        return teamIds.length;
+    }
+
+    int slots() {
+        return nodeIds.length;
+    }
+
+    static int teamOf(int slot) {
+        return slot >> 1;
+    }
+
+    static int partnerOf(int slot) {
+        return slot ^ 1;
+    }
+
+    /** True for the *-01 node of a team. */
+    static boolean isNode1(int slot) {
+        return (slot & 1) == 0;
+    }
+
+    String teamId(int team) {
+        return teamIds[team];
+    }
+
+    String nodeId(int slot) {
+        return nodeIds[slot];
+    }
+
+    /** The slot's session view, live or not; null if the slot has no credential. */
+    NodeSession view(int slot) {
+        return views[slot];
+    }
+
+    /** The slot's session if it is live, else null. */
+    NodeSession session(int slot) {
+        NodeSession s = views[slot];
+        return s != null && s.state() != 0L ? s : null;
+    }
+}
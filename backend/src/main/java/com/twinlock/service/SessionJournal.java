@@ -0,0 +1,431 @@
+package com.twinlock.service;
+
+import com.twinlock.model.EventClock;
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal + periodic snapshot of all session and event state, so
+ * a restart replays to the pre-crash state instead of wiping the event.
+ *
+ * A transition's thread enqueues its SessionEvent and then waits until the
+ * batch holding it is on disk, so a reply never acknowledges a transition a
+ * crash could lose. A single writer thread drains the queue, appends one
+ * record per event and fsyncs once per batch (group commit): however many
+ * requests are waiting, the disk sees one fsync per drain. Records carry the
+ * ABSOLUTE state read at write time — the node's packed state word, or the
+ * whole event clock setting — so replay is a plain last-writer-wins
+ * overwrite and never depends on transition order.
+ *
+ * Two kinds of event do not wait: hint releases, which the hint schedule
+ * re-derives after a restart, and words applied from a cluster peer, whose
+ * owner has them durable already — both arrive in bulk from one thread. A
+ * full queue never blocks the publisher either: the record is dropped and
+ * counted (the word is still in the next snapshot). A waiter whose batch
+ * failed to write is told so, and logs the transition as not durable rather
+ * than answering as if it were on disk.
+ *
+ * Files in twinlock.persistence.dir:
+ * journal.bin [magic][generation] then records [len][type][payload][crc32]
+ * snapshot.bin [magic][nextGeneration][event][count][team,node,state]*[crc32]
+ * event = started, originEpochMillis, then (since TLS2 / in newer records)
+ * paused, pausedAtMillis, extensionMillis
+ *
+ * After a snapshot the journal restarts at nextGeneration; a journal older
+ * than the snapshot (crash between the two steps) is ignored on recovery.
+ */
+@Service
+public class SessionJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionJournal.class);
+
+    private static final int JOURNAL_MAGIC = 0x544C4A31; // "TLJ1"
+    private static final int SNAPSHOT_MAGIC_V1 = 0x544C5331; // "TLS1" — event without pause/extension
+    private static final int SNAPSHOT_MAGIC = 0x544C5332; // "TLS2"
+    private static final int MAX_BATCH = 4096;
+    private static final SessionEvent.Type[] TYPES = SessionEvent.Type.values();
+
+    @Value("${twinlock.persistence.enabled:true}")
+    private boolean enabled;
+    @Value("${twinlock.persistence.dir:./twinlock-data}")
+    private String dir;
+    @Value("${twinlock.persistence.snapshot-seconds:30}")
+    private int snapshotSeconds;
+
+    private final TwinLockService service;
+    private final LinkedBlockingQueue<SessionEvent> queue = new LinkedBlockingQueue<>(1 << 16);
+
+    // commit tickets: the n-th event enqueued is committed once committed >= n
+    private final ReentrantLock enqueueLock = new ReentrantLock(); // keeps ticket order = queue order
+    private long enqueued; // under enqueueLock
+    private volatile long committed;
+    // highest ticket of a batch whose write failed; set before committed moves past it
+    private volatile long failedThrough;
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitDone = commitLock.newCondition();
+    private final LongAdder dropped = new LongAdder();
+
+    // writer-thread state
+    private FileChannel journal;
+    private long generation;
+    private long recordsSinceSnapshot;
+    private long lastSnapshotNanos;
+    private final ByteArrayOutputStream recordBuf = new ByteArrayOutputStream(256);
+    private final CRC32 crc = new CRC32();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public SessionJournal(TwinLockService service) {
+        this.service = service;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // LIFECYCLE
+    // ════════════════════════════════════════════════════════════════
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled)
+            return;
+        Path root = Paths.get(dir);
+        Files.createDirectories(root);
+        long t0 = System.nanoTime();
+        int replayed = recover(root);
+        log.info("[JOURNAL] Recovered {} records from {} in {} ms.", replayed, root.toAbsolutePath(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+
+        // start from a fresh snapshot so the replayed journal can be dropped
+        snapshot(root);
+        running = true;
+        writer = new Thread(this::writeLoop, "twinlock-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null)
+            return;
+        running = false;
+        // no interrupt: it would close the channel under a write; the poll times out within a second
+        writer.join(5000);
+        signalCommitted(); // anyone still waiting gives up — see awaitCommit
+        if (writer.isAlive()) {
+            // snapshotting or closing under it would race its current append
+            log.warn("[JOURNAL] Writer still busy after 5 s — skipping the final snapshot; {} events unwritten.",
+                    queue.size());
+            return;
+        }
+        snapshot(Paths.get(dir));
+        journal.close();
+    }
+
+    /** Returns once the event's record is on disk (or, for hints and replicas, once queued). */
+    @EventListener
+    public void onSessionEvent(SessionEvent e) {
+        if (!running)
+            return;
+        long ticket;
+        enqueueLock.lock();
+        try {
+            if (!queue.offer(e)) {
+                dropped.increment();
+                return;
+            }
+            ticket = ++enqueued;
+        } finally {
+            enqueueLock.unlock();
+        }
+        SessionEvent.Type t = e.getType();
+        if (t != SessionEvent.Type.HINT && t != SessionEvent.Type.REPLICA && t != SessionEvent.Type.EVENT_SYNC
+                && !awaitCommit(ticket))
+            log.error("[JOURNAL] {} for {} / {} is NOT durable — a restart before the next snapshot loses it.",
+                    t, e.getTeamId(), e.getNodeId());
+    }
+
+    /** Records lost to a full queue or a failed write. */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for the ticket's batch; false if it failed to write or the writer
+     * stopped first. A waiter that wakes late may see a later failure's
+     * watermark and report a written record as failed — never the reverse.
+     */
+    private boolean awaitCommit(long ticket) {
+        if (committed >= ticket)
+            return ticket > failedThrough;
+        commitLock.lock();
+        try {
+            while (committed < ticket && running)
+                commitDone.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            commitLock.unlock();
+        }
+        return committed >= ticket && ticket > failedThrough;
+    }
+
+    private void signalCommitted() {
+        commitLock.lock();
+        try {
+            commitDone.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // WRITER — group commit
+    // ════════════════════════════════════════════════════════════════
+
+    private void writeLoop() {
+        Path root = Paths.get(dir);
+        List<SessionEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                SessionEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    try {
+                        append(batch);
+                    } catch (IOException e) {
+                        log.error("[JOURNAL] Write failed; {} events dropped.", batch.size(), e);
+                        dropped.add(batch.size());
+                        failedThrough = committed + batch.size();
+                    }
+                    // the writer is the only consumer, so the batch is exactly the next tickets
+                    committed += batch.size();
+                    signalCommitted();
+                    batch.clear();
+                }
+                if (recordsSinceSnapshot > 0
+                        && System.nanoTime() - lastSnapshotNanos > TimeUnit.SECONDS.toNanos(snapshotSeconds))
+                    snapshot(root);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                log.error("[JOURNAL] Snapshot failed.", e);
+            }
+        }
+    }
+
+    private void append(List<SessionEvent> batch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(batch.size() * 64);
+        for (SessionEvent e : batch) {
+            byte[] rec = encode(e);
+            if (rec == null)
+                continue;
+            if (buf.remaining() < rec.length + 8) {
+                buf.flip();
+                while (buf.hasRemaining())
+                    journal.write(buf);
+                buf = ByteBuffer.allocate(Math.max(buf.capacity(), rec.length + 8));
+            }
+            crc.reset();
+            crc.update(rec);
+            buf.putInt(rec.length).put(rec).putInt((int) crc.getValue());
+        }
+        buf.flip();
+        while (buf.hasRemaining())
+            journal.write(buf);
+        journal.force(false);
+        recordsSinceSnapshot += batch.size();
+    }
+
+    /** Absolute state as of now for the node/event the SessionEvent points at. */
+    private byte[] encode(SessionEvent e) throws IOException {
+        recordBuf.reset();
+        DataOutputStream out = new DataOutputStream(recordBuf);
+        out.writeByte(e.getType().ordinal());
+        if (e.isEventWide()) {
+            writeClock(out, service.getEventClock());
+        } else {
+            NodeSession s = service.getSession(e.getTeamId(), e.getNodeId());
+            if (s == null)
+                return null;
+            out.writeUTF(e.getTeamId());
+            out.writeUTF(e.getNodeId());
+            out.writeLong(s.state());
+        }
+        return recordBuf.toByteArray();
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // SNAPSHOT
+    // ════════════════════════════════════════════════════════════════
+
+    private void snapshot(Path root) throws IOException {
+        long next = generation + 1;
+        Path tmp = root.resolve("snapshot.tmp");
+        List<NodeSession> all = new ArrayList<>();
+        service.forEachSession(all::add);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream b = new DataOutputStream(body);
+            writeClock(b, service.getEventClock());
+            b.writeInt(all.size());
+            for (NodeSession s : all) {
+                b.writeUTF(s.getTeamId());
+                b.writeUTF(s.getNodeId());
+                b.writeLong(s.state());
+            }
+            byte[] bytes = body.toByteArray();
+            crc.reset();
+            crc.update(bytes);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(next);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, root.resolve("snapshot.bin"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // restart the journal at the generation the snapshot expects
+        if (journal != null)
+            journal.close();
+        journal = FileChannel.open(root.resolve("journal.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        journal.write(ByteBuffer.allocate(12).putInt(JOURNAL_MAGIC).putLong(next).flip());
+        journal.force(true);
+        generation = next;
+        recordsSinceSnapshot = 0;
+        lastSnapshotNanos = System.nanoTime();
+        log.debug("[JOURNAL] Snapshot gen {} — {} sessions.", next, all.size());
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // RECOVERY
+    // ════════════════════════════════════════════════════════════════
+
+    private int recover(Path root) throws IOException {
+        int n = 0;
+        long expectedGen = 0;
+        Path snap = root.resolve("snapshot.bin");
+        if (Files.exists(snap)) {
+            byte[] all = Files.readAllBytes(snap);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(all));
+            int magic = all.length < 16 ? 0 : in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V1) {
+                log.warn("[JOURNAL] Ignoring unreadable snapshot {}", snap);
+            } else {
+                long gen = in.readLong();
+                crc.reset();
+                crc.update(all, 12, all.length - 16);
+                int stored = ByteBuffer.wrap(all, all.length - 4, 4).getInt();
+                if (stored != (int) crc.getValue()) {
+                    log.warn("[JOURNAL] Snapshot checksum mismatch — ignoring {}", snap);
+                } else {
+                    boolean started = in.readBoolean();
+                    long origin = in.readLong();
+                    service.restoreEvent(magic == SNAPSHOT_MAGIC ? readClockRest(in, started, origin)
+                            : EventClock.State.restored(started, false, origin, 0, 0));
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++)
+                        service.restoreNode(in.readUTF(), in.readUTF(), in.readLong());
+                    n += count;
+                    expectedGen = gen;
+                    generation = gen;
+                }
+            }
+        }
+
+        Path jp = root.resolve("journal.bin");
+        if (!Files.exists(jp))
+            return n;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(jp), 1 << 16))) {
+            if (in.readInt() != JOURNAL_MAGIC)
+                return n;
+            long gen = in.readLong();
+            if (gen < expectedGen) {
+                log.info("[JOURNAL] Journal gen {} predates snapshot gen {} — skipped.", gen, expectedGen);
+                return n;
+            }
+            generation = Math.max(generation, gen);
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                if (len <= 0 || len > 4096)
+                    break;
+                byte[] rec = new byte[len];
+                in.readFully(rec);
+                crc.reset();
+                crc.update(rec);
+                if (in.readInt() != (int) crc.getValue())
+                    break; // torn tail from a crash mid-write
+                replay(rec);
+                n++;
+            }
+        } catch (EOFException torn) {
+            // partial last record — everything before it was applied
+        }
+        return n;
+    }
+
+    private void replay(byte[] rec) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(rec));
+        SessionEvent.Type type = TYPES[in.readUnsignedByte()];
+        if (type.isEventWide()) {
+            boolean started = in.readBoolean();
+            long origin = in.readLong();
+            // records from before pause/extend end here
+            service.restoreEvent(in.available() > 0 ? readClockRest(in, started, origin)
+                    : EventClock.State.restored(started, false, origin, 0, 0));
+        } else {
+            service.restoreNode(in.readUTF(), in.readUTF(), in.readLong());
+        }
+    }
+
+    // also the cluster's wire format for the clock
+    static void writeClock(DataOutputStream out, EventClock.State clock) throws IOException {
+        out.writeBoolean(clock.isStarted());
+        out.writeLong(clock.getOriginEpochMillis());
+        out.writeBoolean(clock.isPaused());
+        out.writeLong(clock.getPausedAtMillis());
+        out.writeLong(clock.getExtensionMillis());
+    }
+
+    static EventClock.State readClock(DataInputStream in) throws IOException {
+        return readClockRest(in, in.readBoolean(), in.readLong());
+    }
+
+    private static EventClock.State readClockRest(DataInputStream in, boolean started, long origin)
+            throws IOException {
+        return EventClock.State.restored(started, in.readBoolean(), origin, in.readLong(), in.readLong());
+    }
+}
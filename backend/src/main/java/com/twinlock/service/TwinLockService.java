@@ -1,24 +1,41 @@
 package com.twinlock.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.twinlock.model.EventClock;
 import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import com.twinlock.model.SessionStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.time.*;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 
 @Service
 public class TwinLockService {
 
     private static final Logger log = LoggerFactory.getLogger(TwinLockService.class);
 
+    // used once per Level at class init — must precede the PUZZLES block
+    private static final ObjectMapper JSON = new ObjectMapper();
+
     // ════════════════════════════════════════════════════════════════
     // DATA MODEL — one Level = one stage of the puzzle
     // ════════════════════════════════════════════════════════════════
@@ -29,6 +46,11 @@ public class TwinLockService {
         final String cipherType;
         final String cipherText;
         final String[] hints; // each element = one printed line
+        final int hintCount; // "[HINT n]" lines each open a hint
+        // static parts of the status/level-up payloads, serialized once per
+        // number of hints released — index k holds the first k hints
+        final RawValue[] hintsJson; // [ "...", ... ]
+        final byte[][] fragments; // "cipher":"...","cipherType":"...","hints":[...],"hintsTotal":n
 
         Level(String kw, int cs, String type, String cipher, String... hints) {
             keyword = kw;
@@ -36,6 +58,30 @@ public class TwinLockService {
             cipherType = type;
             cipherText = cipher;
             this.hints = hints;
+            // starts[k] = first line of hint k + 1 = lines in the first k hints
+            int[] starts = new int[hints.length + 1];
+            int n = 0;
+            for (int i = 0; i < hints.length; i++)
+                if (i == 0 || hints[i].startsWith("[HINT "))
+                    starts[n++] = i;
+            starts[n] = hints.length;
+            if (n > NodeSession.MAX_HINTS)
+                throw new IllegalStateException(kw + ": more than " + NodeSession.MAX_HINTS + " hints");
+            hintCount = n;
+            hintsJson = new RawValue[n + 1];
+            fragments = new byte[n + 1][];
+            try {
+                String head = "\"cipher\":" + JSON.writeValueAsString(cipher)
+                        + ",\"cipherType\":" + JSON.writeValueAsString(type);
+                for (int k = 0; k <= n; k++) {
+                    String h = JSON.writeValueAsString(Arrays.copyOf(hints, starts[k]));
+                    hintsJson[k] = new RawValue(h);
+                    fragments[k] = (head + ",\"hints\":" + h + ",\"hintsTotal\":" + n)
+                            .getBytes(StandardCharsets.UTF_8);
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
         }
     }
 
@@ -62,6 +108,14 @@ public class TwinLockService {
             node1Type = n1[2].cipherType;
             node2Type = n2[2].cipherType;
         }
+
+        Level[] levels(String nodeId) {
+            return isNode1(nodeId) ? node1Levels : node2Levels;
+        }
+
+        Level[] levels(int slot) {
+            return SessionDirectory.isNode1(slot) ? node1Levels : node2Levels;
+        }
     }
 
     // ════════════════════════════════════════════════════════════════
@@ -537,6 +591,9 @@ public class TwinLockService {
                 }));
     }
 
+    /** Array-backed view of PUZZLES for index-based team assignment. */
+    private static final PuzzleSet[] REGISTRY = PUZZLES.values().toArray(new PuzzleSet[0]);
+
     // ── Spring Config ──────────────────────────────────────────────
     @Value("${twinlock.duration-minutes:30}")
     private int durationMinutes;
@@ -548,33 +605,64 @@ public class TwinLockService {
     private int teamCount;
     @Value("${twinlock.team-prefix:TEAM}")
     private String teamPrefix;
+    @Value("${twinlock.credential-mode:eager}")
+    private String credentialMode;
+    @Value("${twinlock.credential-cache-size:65536}")
+    private int credentialCacheSize;
     @Value("${twinlock.google-form-link-node1:https://forms.gle/REPLACEME_NODE1}")
     private String googleFormLinkNode1;
     @Value("${twinlock.google-form-link-node2:https://forms.gle/REPLACEME_NODE2}")
     private String googleFormLinkNode2;
     @Value("${twinlock.hint-cooldown-minutes:5}")
     private int hintCooldownMinutes;
+    @Value("${twinlock.hint-cooldown-seconds:0}")
+    private int hintCooldownSeconds;
+    @Value("${twinlock.session-store:heap}")
+    private String sessionStoreMode;
+    @Value("${twinlock.session-store-file:./twinlock-data/sessions.tbl}")
+    private String sessionStoreFile;
 
     private final Environment env;
-    private final ConcurrentHashMap<String, NodeSession> sessions = new ConcurrentHashMap<>();
-    private final Map<String, String> credentials = new HashMap<>();
-    private volatile boolean eventStarted = false;
-    private volatile LocalDateTime eventStartTime = null;
-
-    public TwinLockService(Environment env) {
+    private final ApplicationEventPublisher events;
+    private final AuditLog audit;
+    private SessionDirectory directory;
+    private PuzzleSet[] puzzles; // by team index
+    private CredentialTable credentials; // access keys by slot
+    private SessionStore store;
+    private EventClock clock;
+    // ETag inputs: any restart invalidates every tag, then counters order changes
+    private final String bootTag = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong eventVersion = new AtomicLong();
+    private AdminAggregate aggregate;
+    private Leaderboard leaderboard;
+    private HintWheel hints;
+    private volatile IntPredicate ownsSlot = slot -> true; // see setSlotOwnership
+
+    public TwinLockService(Environment env, ApplicationEventPublisher events, AuditLog audit) {
         this.env = env;
+        this.events = events;
+        this.audit = audit;
     }
 
     @PostConstruct
     public void init() {
+        List<String> roster = new ArrayList<>(); // team IDs in slot order
+        String[] nodeIds;
+        boolean lazy = teamCount > 0 && "lazy".equalsIgnoreCase(credentialMode);
         if (teamCount > 0) {
-            log.info("[INIT] Auto-generating credentials for {} teams.", teamCount);
-            for (int i = 1; i <= teamCount; i++) {
-                String tid = teamPrefix + String.format("%02d", i);
-                credentials.put(tid + "_SYS-01", deriveKey(tid, "SYS-01"));
-                credentials.put(tid + "_SYS-02", deriveKey(tid, "SYS-02"));
-            }
+            if (!CredentialTable.storable(teamPrefix) || teamPrefix.indexOf('_') >= 0)
+                throw new IllegalStateException("twinlock.team-prefix must be printable ASCII without '_' or blanks: '"
+                        + teamPrefix + "'");
+            log.info("[INIT] Auto-generating credentials for {} teams ({}).", teamCount, lazy ? "lazy" : "eager");
+            for (int i = 1; i <= teamCount; i++)
+                roster.add(teamPrefix + (i < 10 ? "0" + i : String.valueOf(i)));
+            nodeIds = new String[2 * roster.size()];
+            for (int slot = 0; slot < nodeIds.length; slot++)
+                nodeIds[slot] = SessionDirectory.isNode1(slot) ? "SYS-01" : "SYS-02";
+            if (!lazy)
+                credentials = deriveCredentials(roster, nodeIds);
         } else {
+            Map<String, String> configured = new HashMap<>();
             try {
                 ((org.springframework.core.env.AbstractEnvironment) env)
                         .getPropertySources().forEach(ps -> {
@@ -586,7 +674,7 @@ public class TwinLockService {
                                         if (dot > 0) {
                                             String tid = rest.substring(0, dot).toUpperCase();
                                             String nid = rest.substring(dot + 1).toUpperCase();
-                                            credentials.put(tid + "_" + nid, env.getProperty(name));
+                                            configured.put(tid + "_" + nid, env.getProperty(name));
                                         }
                                     }
                                 }
@@ -595,57 +683,159 @@ public class TwinLockService {
             } catch (Exception e) {
                 log.error("Failed to load credentials", e);
             }
+            SortedSet<String> ids = new TreeSet<>();
+            configured.keySet().forEach(key -> ids.add(key.substring(0, key.lastIndexOf('_'))));
+            roster.addAll(ids);
+            // team i owns slots 2i (the *-01 node) and 2i+1
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < roster.size(); i++)
+                index.put(roster.get(i), i);
+            nodeIds = new String[2 * roster.size()];
+            String[] keys = new String[nodeIds.length];
+            configured.forEach((key, accessKey) -> {
+                int us = key.lastIndexOf('_');
+                String nid = key.substring(us + 1);
+                int slot = 2 * index.get(key.substring(0, us)) + (isNode1(nid) ? 0 : 1);
+                if (!CredentialTable.storable(accessKey)) {
+                    log.warn("[INIT] {} has an empty or non-ASCII access key — skipped.", key);
+                    return;
+                }
+                if (nodeIds[slot] != null)
+                    log.warn("[INIT] {} and {} share a slot — only one is usable.", key, nodeIds[slot]);
+                nodeIds[slot] = nid;
+                keys[slot] = accessKey;
+            });
+            credentials = CredentialTable.of(keys);
+        }
+        // resolve every team's puzzle here so the request path never has to
+        puzzles = new PuzzleSet[roster.size()];
+        for (int i = 0; i < roster.size(); i++)
+            puzzles[i] = resolvePuzzle(roster.get(i));
+        int rosterHash = 0; // sum of "TEAM_NODE" hashes — tells a mapped store which roster it holds
+        int credentialed = 0;
+        for (int slot = 0; slot < nodeIds.length; slot++) {
+            if (nodeIds[slot] != null) {
+                rosterHash += credentialKeyHash(roster.get(SessionDirectory.teamOf(slot)), nodeIds[slot]);
+                credentialed++;
+            }
         }
-        log.info("[INIT] TwinLock ready. {} credentials, {} puzzles.", credentials.size(), PUZZLES.size());
+        store = openStore(nodeIds.length, rosterHash);
+        directory = new SessionDirectory(roster, nodeIds, store);
+        if (lazy)
+            credentials = lazyCredentials(roster, nodeIds);
+        clock = new EventClock(durationSeconds > 0 ? durationSeconds * 1000L : durationMinutes * 60_000L);
+        hints = new HintWheel(directory.slots(), clock::elapsedMillis, this::hintDueAt, this::releaseHint);
+        recoverFromStore();
+        aggregate = new AdminAggregate(directory, this::adminRow);
+        leaderboard = new Leaderboard(directory);
+        hints.scheduleAll();
+        hints.start();
+        log.info("[INIT] TwinLock ready. {} credentials, {} puzzles.", credentialed, REGISTRY.length);
     }
 
-    private String deriveKey(String teamId, String nodeId) {
+    /** {@code (teamId + "_" + nodeId).hashCode()} without building the string. */
+    private static int credentialKeyHash(String teamId, String nodeId) {
+        int h = teamId.hashCode() * 31 + '_';
+        for (int i = 0; i < nodeId.length(); i++)
+            h *= 31;
+        return h + nodeId.hashCode();
+    }
+
+    private SessionStore openStore(int slots, int rosterHash) {
+        if ("mapped".equalsIgnoreCase(sessionStoreMode)) {
+            try {
+                SessionStore mapped = MappedSessionStore.open(Paths.get(sessionStoreFile), slots, rosterHash);
+                log.info("[INIT] Session store mapped at {} ({} slots).", sessionStoreFile, slots);
+                return mapped;
+            } catch (IOException e) {
+                log.error("[INIT] Cannot map {} — falling back to heap store.", sessionStoreFile, e);
+            }
+        }
+        return new SessionStore.Heap(slots);
+    }
+
+    /** Picks up sessions and the event clock that survived in a durable store. */
+    private void recoverFromStore() {
+        int recovered = 0;
+        for (int slot = 0; slot < directory.slots(); slot++)
+            if (directory.session(slot) != null)
+                recovered++;
+        EventClock.State saved = store.eventState();
+        if (saved != null)
+            restoreEvent(saved);
+        if (recovered > 0)
+            log.info("[INIT] Recovered {} sessions from the session store.", recovered);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hints.stop();
+        store.flush();
+    }
+
+    private CredentialTable deriveCredentials(List<String> roster, String[] nodeIds) {
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(secretSalt.getBytes("UTF-8"), "HmacSHA256"));
-            byte[] hash = mac.doFinal((teamId + "_" + nodeId).getBytes("UTF-8"));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash)
-                sb.append(String.format("%02X", b));
-            return sb.substring(0, 8);
-        } catch (Exception e) {
-            return (teamId + nodeId).toUpperCase().replaceAll("[^A-Z0-9]", "").substring(0, 8);
+            return CredentialTable.derive(secretSalt, roster.toArray(new String[0]), nodeIds);
+        } catch (IllegalStateException e) {
+            log.error("[INIT] Cannot derive access keys from the secret salt.", e);
+            return fallbackCredentials(roster, nodeIds);
         }
     }
 
+    private CredentialTable lazyCredentials(List<String> roster, String[] nodeIds) {
+        try {
+            return new LazyCredentials(secretSalt, directory, credentialCacheSize);
+        } catch (IllegalStateException e) {
+            log.error("[INIT] Cannot derive access keys from the secret salt.", e);
+            return fallbackCredentials(roster, nodeIds);
+        }
+    }
+
+    /** No usable HMAC key — the legacy ID-derived keys. */
+    private static CredentialTable fallbackCredentials(List<String> roster, String[] nodeIds) {
+        String[] keys = new String[nodeIds.length];
+        for (int slot = 0; slot < nodeIds.length; slot++)
+            keys[slot] = (roster.get(SessionDirectory.teamOf(slot)) + nodeIds[slot]).toUpperCase()
+                    .replaceAll("[^A-Z0-9]", "").substring(0, 8);
+        return CredentialTable.of(keys);
+    }
+
     // ════════════════════════════════════════════════════════════════
     // AUTH
     // ════════════════════════════════════════════════════════════════
 
+    /** Raw team/node IDs are matched case-insensitively, ignoring surrounding blanks. */
     public Map<String, Object> login(String teamId, String nodeId, String accessKey) {
         Map<String, Object> resp = new HashMap<>();
-        String expected = credentials.get(teamId + "_" + nodeId);
-        if (expected == null || !expected.equals(accessKey)) {
+        int slot = directory.slot(teamId, nodeId);
+        if (slot == SessionDirectory.NONE || !credentials.matches(slot, accessKey)) {
             resp.put("status", "FAIL");
             return resp;
         }
-        sessions.computeIfAbsent(teamId + "_" + nodeId, k -> new NodeSession(teamId, nodeId))
-                .setAuthenticated(true);
+        NodeSession s = directory.view(slot);
+        s.setAuthenticated(true, eventSecond());
+        hints.schedule(slot);
         resp.put("status", "OK");
-        resp.put("teamId", teamId);
-        resp.put("nodeId", nodeId);
-        log.info("[AUTH] {} / {}", teamId, nodeId);
+        resp.put("teamId", s.getTeamId());
+        resp.put("nodeId", s.getNodeId());
+        publish(SessionEvent.Type.LOGIN, slot);
         return resp;
     }
 
     public Map<String, Object> restoreSession(String teamId, String nodeId) {
         Map<String, Object> resp = new HashMap<>();
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
+        NodeSession s = sessionFor(teamId, nodeId);
         if (s == null || !s.isAuthenticated()) {
             resp.put("status", "FAIL");
             return resp;
         }
         resp.put("status", "OK");
-        resp.put("teamId", teamId);
-        resp.put("nodeId", nodeId);
-        resp.put("attemptsRemaining", s.getLevelAttemptsRemaining());
+        resp.put("teamId", s.getTeamId());
+        resp.put("nodeId", s.getNodeId());
+        long st = s.state();
+        resp.put("attemptsRemaining", NodeSession.attemptsRemaining(st));
         resp.put("eventActive", isActive());
-        resp.put("level", s.getCurrentLevel());
+        resp.put("level", NodeSession.level(st));
         return resp;
     }
 
@@ -653,245 +843,924 @@ public class TwinLockService {
     // NODE STATUS
     // ════════════════════════════════════════════════════════════════
 
-    public Map<String, Object> getNodeStatus(String teamId, String nodeId) {
-        Map<String, Object> resp = new HashMap<>();
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
-        boolean active = isActive();
-        resp.put("eventActive", active);
-        if (s == null) {
-            resp.put("authenticated", false);
-            return resp;
+    private static final byte[] F_EVENT_ACTIVE = JsonBytes.name("eventActive");
+    private static final byte[] F_EVENT_PAUSED = JsonBytes.name("eventPaused");
+    private static final byte[] F_AUTHENTICATED = JsonBytes.name("authenticated");
+    private static final byte[] F_ATTEMPTS_REMAINING = JsonBytes.name("attemptsRemaining");
+    private static final byte[] F_NODE_LOCKED = JsonBytes.name("nodeLocked");
+    private static final byte[] F_UNLOCKED = JsonBytes.name("unlocked");
+    private static final byte[] F_LEVEL = JsonBytes.name("level");
+    private static final byte[] F_PARTNER_CONNECTED = JsonBytes.name("partnerConnected");
+    private static final byte[] F_PARTNER_UNLOCKED = JsonBytes.name("partnerUnlocked");
+    private static final byte[] F_PARTNER_NODE_ID = JsonBytes.name("partnerNodeId");
+    private static final byte[] F_TIME_REMAINING = JsonBytes.name("timeRemainingSeconds");
+    private static final byte[] F_EVENT_ENDS_AT = JsonBytes.name("eventEndsAt");
+    private static final byte[] F_NEXT_HINT_AT = JsonBytes.name("nextHintAt");
+
+    /**
+     * Entity tag for a node's status body. Everything in the body except
+     * timeRemainingSeconds is a function of the team version (sum of both
+     * nodes' state-word versions — each only grows), the event version and
+     * whether the window is open, so an unchanged tag means an unchanged
+     * body. Clients count down locally from the last full response.
+     */
+    public String nodeStatusETag(int slot) {
+        long team = 0;
+        if (slot != SessionDirectory.NONE) {
+            NodeSession s = directory.view(slot);
+            NodeSession partner = directory.view(SessionDirectory.partnerOf(slot));
+            team = NodeSession.version(s.state()) + (partner != null ? NodeSession.version(partner.state()) : 0);
+        }
+        return '"' + bootTag + '.' + eventVersion.get() + (isActive() ? ".a." : ".i.") + team + '"';
+    }
+
+    /**
+     * Entity tag for one admin status query — moves with the aggregate and
+     * the event, and names the query, so a tag from one filter or page is
+     * never taken for another's. Arguments as for getAdminStatus.
+     */
+    public String adminStatusETag(String team, int level, String state, int page, int size, long since) {
+        String t = team == null || team.isBlank() ? "*" : String.valueOf(directory.team(team)); // -1 = unknown
+        String st = state == null ? "*" : switch (state) {
+            case AdminAggregate.STATE_IDLE, AdminAggregate.STATE_ACTIVE, AdminAggregate.STATE_LOCKED,
+                    AdminAggregate.STATE_UNLOCKED -> state;
+            default -> "?"; // matches nothing, like any other unknown state
+        };
+        return '"' + bootTag + '.' + eventVersion.get() + '.' + aggregate.version() + (isActive() ? ".a." : ".i.")
+                + t + '.' + level + '.' + st + '.' + (since >= 0 ? "s" + since : page + "x" + size) + '"';
+    }
+
+    /**
+     * Writes the status JSON for one node straight to {@code out}. Only the
+     * dynamic fields are encoded per call; the level's cipher/type and the
+     * hints released so far are spliced in from the bytes serialized at
+     * startup.
+     */
+    public void writeNodeStatus(String teamId, String nodeId, OutputStream out) throws IOException {
+        writeNodeStatus(resolve(teamId, nodeId), out);
+    }
+
+    /** As above for an already-resolved slot; NONE writes the unauthenticated body. */
+    public void writeNodeStatus(int slot, OutputStream out) throws IOException {
+        writeNodeStatus(slot, clock.read(), out); // one reading for the whole body
+    }
+
+    /**
+     * Entity tag for a batch of status bodies, in order. Every word's version
+     * only grows, so the sum of the batch's team versions moves on any change
+     * to one of them; the hash of the slot list keeps two different batches
+     * with the same sum apart.
+     */
+    public String nodeStatusesETag(int[] slots) {
+        long sum = 0;
+        int hash = 1;
+        for (int slot : slots) {
+            hash = hash * 31 + slot;
+            if (slot == SessionDirectory.NONE)
+                continue;
+            NodeSession partner = directory.view(SessionDirectory.partnerOf(slot));
+            sum += NodeSession.version(directory.view(slot).state())
+                    + (partner != null ? NodeSession.version(partner.state()) : 0);
         }
+        return '"' + bootTag + '.' + eventVersion.get() + (isActive() ? ".a." : ".i.")
+                + Integer.toHexString(hash) + '.' + sum + '"';
+    }
 
-        int level = s.getCurrentLevel();
-        resp.put("authenticated", true);
-        resp.put("attemptsRemaining", s.getLevelAttemptsRemaining());
-        resp.put("nodeLocked", s.isPermanentlyLocked());
-        resp.put("unlocked", s.isUnlocked());
-        resp.put("level", level);
+    /**
+     * The status bodies of several nodes as one JSON array, in the order
+     * given — each exactly what {@link #writeNodeStatus(int, OutputStream)}
+     * writes, all from a single clock reading.
+     */
+    public void writeNodeStatuses(int[] slots, OutputStream out) throws IOException {
+        long clk = clock.read();
+        out.write('[');
+        for (int i = 0; i < slots.length; i++) {
+            if (i > 0)
+                out.write(',');
+            writeNodeStatus(slots[i], clk, out);
+        }
+        out.write(']');
+    }
+
+    private void writeNodeStatus(int slot, long clk, OutputStream out) throws IOException {
+        NodeSession s = slot == SessionDirectory.NONE ? null : directory.session(slot);
+        boolean active = EventClock.open(clk);
+        out.write('{');
+        out.write(F_EVENT_ACTIVE);
+        JsonBytes.write(out, active);
+        if (EventClock.paused(clk)) {
+            out.write(',');
+            out.write(F_EVENT_PAUSED);
+            JsonBytes.write(out, true);
+            out.write(',');
+            out.write(F_TIME_REMAINING);
+            JsonBytes.write(out, EventClock.remainingSeconds(clk));
+        }
+        out.write(',');
+        out.write(F_AUTHENTICATED);
+        if (s == null) {
+            JsonBytes.write(out, false);
+            out.write('}');
+            return;
+        }
+        JsonBytes.write(out, true);
+
+        long st = s.state();
+        int level = NodeSession.level(st);
+        out.write(',');
+        out.write(F_ATTEMPTS_REMAINING);
+        JsonBytes.write(out, NodeSession.attemptsRemaining(st));
+        out.write(',');
+        out.write(F_NODE_LOCKED);
+        JsonBytes.write(out, NodeSession.locked(st));
+        out.write(',');
+        out.write(F_UNLOCKED);
+        JsonBytes.write(out, NodeSession.unlocked(st));
+        out.write(',');
+        out.write(F_LEVEL);
+        JsonBytes.write(out, level);
 
         // partner info
-        final String[] partnerNodeId = { "" };
-        final boolean[] partnerUnlocked = { false };
-        final boolean[] partnerConn = { false };
-        sessions.forEach((k, sess) -> {
-            if (teamId.equals(sess.getTeamId()) && !nodeId.equals(sess.getNodeId()) && sess.isAuthenticated()) {
-                partnerNodeId[0] = sess.getNodeId();
-                partnerUnlocked[0] = sess.isUnlocked();
-                partnerConn[0] = true;
-            }
-        });
-        resp.put("partnerConnected", partnerConn[0]);
-        resp.put("partnerUnlocked", partnerUnlocked[0]);
-        if (partnerConn[0])
-            resp.put("partnerNodeId", partnerNodeId[0]);
+        NodeSession partner = directory.session(SessionDirectory.partnerOf(slot));
+        long pst = partner != null ? partner.state() : 0L;
+        boolean partnerConn = NodeSession.authenticated(pst);
+        out.write(',');
+        out.write(F_PARTNER_CONNECTED);
+        JsonBytes.write(out, partnerConn);
+        out.write(',');
+        out.write(F_PARTNER_UNLOCKED);
+        JsonBytes.write(out, partnerConn && NodeSession.unlocked(pst));
+        if (partnerConn) {
+            out.write(',');
+            out.write(F_PARTNER_NODE_ID);
+            JsonBytes.write(out, partner.getNodeId());
+        }
 
         if (active) {
-            Level lev = currentLevel(teamId, nodeId, s);
-            resp.put("timeRemainingSeconds", getTimeRemainingSeconds());
-            resp.put("cipher", lev.cipherText);
-            resp.put("cipherType", lev.cipherType);
-            resp.put("hints", Arrays.asList(lev.hints));
+            out.write(',');
+            out.write(F_TIME_REMAINING);
+            JsonBytes.write(out, EventClock.remainingSeconds(clk));
+            out.write(',');
+            out.write(F_EVENT_ENDS_AT);
+            JsonBytes.write(out, clock.endsAtEpochMillis());
+            Level lev = currentLevel(slot, level);
+            out.write(',');
+            out.write(lev.fragments[releasedHints(lev, st)]);
+            long nextHint = hintDueAtEpochMillis(slot, st);
+            if (nextHint >= 0) {
+                out.write(',');
+                out.write(F_NEXT_HINT_AT);
+                JsonBytes.write(out, nextHint);
+            }
         }
-        return resp;
+        out.write('}');
+    }
+
+    /** One node's status as a standalone JSON object — for push channels that frame their own messages. */
+    public byte[] nodeStatusJson(int slot) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(512);
+        try {
+            writeNodeStatus(slot, buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buf.toByteArray();
     }
 
     // ════════════════════════════════════════════════════════════════
     // SUBMIT (multi-level)
     // ════════════════════════════════════════════════════════════════
 
-    public Map<String, Object> submit(String teamId, String nodeId, String payload) {
+    public Map<String, Object> submit(String rawTeamId, String rawNodeId, String payload) {
+        return submit(directory.slot(rawTeamId, rawNodeId), payload);
+    }
+
+    /**
+     * Submits for several nodes in one call, in order — a node listed twice
+     * has its second payload judged against the state the first left.
+     *
+     * @param slots    resolved slots; NONE answers "Not authenticated"
+     * @param payloads trimmed payloads, parallel to {@code slots}
+     */
+    public List<Map<String, Object>> submitAll(int[] slots, String[] payloads) {
+        List<Map<String, Object>> results = new ArrayList<>(slots.length);
+        for (int i = 0; i < slots.length; i++)
+            results.add(submit(slots[i], payloads[i]));
+        return results;
+    }
+
+    /** One submit for an already-resolved slot; NONE answers "Not authenticated". */
+    public Map<String, Object> submit(int slot, String payload) {
         Map<String, Object> resp = new HashMap<>();
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
+        NodeSession s = slot == SessionDirectory.NONE ? null : directory.session(slot);
         if (s == null || !s.isAuthenticated()) {
             resp.put("status", "FAIL");
             resp.put("message", "Not authenticated");
             return resp;
         }
-        if (s.isPermanentlyLocked() || s.isUnlocked()) {
-            resp.put("status", "LOCKED");
-            return resp;
-        }
-        if (!isActive()) {
-            resp.put("status", "FAIL");
-            resp.put("message", "Event not active");
-            return resp;
-        }
-        if (s.getLevelAttemptsRemaining() <= 0) {
-            s.setPermanentlyLocked(true);
-            resp.put("status", "LOCKED");
-            return resp;
-        }
+        String teamId = s.getTeamId();
+        String nodeId = s.getNodeId();
 
-        Level lev = currentLevel(teamId, nodeId, s);
         String[] p = payload.toLowerCase().split("-", 2);
         String kw = p[0];
         String cs = p.length > 1 ? p[1] : "";
 
-        if (lev.keyword.equals(kw) && cs.equals(String.valueOf(lev.checksum))) {
-            // ── CORRECT ────────────────────────────────────────────
-            if (s.getCurrentLevel() < 3) {
-                s.advanceLevel();
-                Level next = currentLevel(teamId, nodeId, s);
-                resp.put("status", "LEVEL_UP");
-                resp.put("nextLevel", s.getCurrentLevel());
-                resp.put("cipher", next.cipherText);
-                resp.put("cipherType", next.cipherType);
-                resp.put("hints", Arrays.asList(next.hints));
-                resp.put("attemptsRemaining", s.getLevelAttemptsRemaining());
-                log.info("[LEVEL_UP] {} / {} → Level {}", teamId, nodeId, s.getCurrentLevel());
-            } else {
-                s.setUnlocked(true);
-                resp.put("status", "UNLOCK");
-                resp.put("formLink", isNode1(nodeId) ? googleFormLinkNode1 : googleFormLinkNode2);
-                resp.put("nodeRole", isNode1(nodeId) ? "PARTNER-A" : "PARTNER-B");
-                log.info("[UNLOCK] {} / {}", teamId, nodeId);
+        // Lock-free transition: decide against one snapshot of the state word
+        // and CAS the successor in; a lost race re-reads and decides again.
+        int judgedLevel = 0;
+        while (true) {
+            long st = s.state();
+            if (NodeSession.locked(st) || NodeSession.unlocked(st)) {
+                resp.put("status", "LOCKED");
+                return resp;
             }
-        } else {
-            // ── WRONG ──────────────────────────────────────────────
-            s.incrementLevelAttempts();
-            log.info("[FAIL] {} / {} level {} attempt {}", teamId, nodeId, s.getCurrentLevel(), s.getLevelAttempts());
-            if (s.getLevelAttemptsRemaining() <= 0) {
-                s.setPermanentlyLocked(true);
+            long clk = clock.read();
+            if (!EventClock.open(clk)) {
+                resp.put("status", "FAIL");
+                resp.put("message", EventClock.paused(clk) ? "Event paused" : "Event not active");
+                return resp;
+            }
+            if (NodeSession.attemptsRemaining(st) <= 0) {
+                long next = NodeSession.withLocked(st);
+                if (!s.compareAndSet(st, next))
+                    continue;
                 resp.put("status", "LOCKED");
-                log.warn("[LOCK] {} / {}", teamId, nodeId);
-            } else {
+                publish(SessionEvent.Type.LOCK, slot, next);
+                return resp;
+            }
+
+            int level = NodeSession.level(st);
+            if (judgedLevel != 0 && judgedLevel != level) {
+                // a concurrent submit already cleared the level this payload was meant for
                 resp.put("status", "FAIL");
-                resp.put("attemptsRemaining", s.getLevelAttemptsRemaining());
+                resp.put("message", "Level already advanced");
+                resp.put("attemptsRemaining", NodeSession.attemptsRemaining(st));
+                return resp;
+            }
+            judgedLevel = level;
+
+            Level lev = currentLevel(slot, level);
+            if (lev.keyword.equals(kw) && cs.equals(String.valueOf(lev.checksum))) {
+                // ── CORRECT ────────────────────────────────────────────
+                if (level < 3) {
+                    long next = NodeSession.advanced(st, eventSecond());
+                    if (!s.compareAndSet(st, next))
+                        continue;
+                    hints.schedule(slot);
+                    Level nextLev = currentLevel(slot, NodeSession.level(next));
+                    resp.put("status", "LEVEL_UP");
+                    resp.put("nextLevel", NodeSession.level(next));
+                    resp.put("cipher", nextLev.cipherText);
+                    resp.put("cipherType", nextLev.cipherType);
+                    resp.put("hints", nextLev.hintsJson[releasedHints(nextLev, next)]);
+                    resp.put("hintsTotal", nextLev.hintCount);
+                    long nextHint = hintDueAtEpochMillis(slot, next);
+                    if (nextHint >= 0)
+                        resp.put("nextHintAt", nextHint);
+                    resp.put("attemptsRemaining", NodeSession.attemptsRemaining(next));
+                    publish(SessionEvent.Type.LEVEL_UP, slot, next);
+                } else {
+                    long next = NodeSession.withUnlocked(st, eventSecond());
+                    if (!s.compareAndSet(st, next))
+                        continue;
+                    resp.put("status", "UNLOCK");
+                    boolean node1 = SessionDirectory.isNode1(slot);
+                    resp.put("formLink", node1 ? googleFormLinkNode1 : googleFormLinkNode2);
+                    resp.put("nodeRole", node1 ? "PARTNER-A" : "PARTNER-B");
+                    publish(SessionEvent.Type.UNLOCK, slot, next);
+                }
+            } else {
+                // ── WRONG ──────────────────────────────────────────────
+                long next = NodeSession.failedAttempt(st);
+                if (!s.compareAndSet(st, next))
+                    continue;
+                if (NodeSession.locked(next)) {
+                    resp.put("status", "LOCKED");
+                    publish(SessionEvent.Type.LOCK, slot, next);
+                } else {
+                    resp.put("status", "FAIL");
+                    resp.put("attemptsRemaining", NodeSession.attemptsRemaining(next));
+                    publish(SessionEvent.Type.FAIL, slot, next);
+                }
             }
+            return resp;
         }
-        return resp;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // HINT RELEASE — the HintWheel fires these
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * A level's first hint is released one cooldown after the node entered
+     * the level, each later one a cooldown after the one before. Both inputs
+     * — hints released, second entered — live in the state word, so every
+     * deadline can be recomputed from the word alone and survives a restart
+     * with it. A cooldown of 0 releases every hint up front.
+     */
+    private long hintCooldownMillis() {
+        return hintCooldownSeconds > 0 ? hintCooldownSeconds * 1000L : hintCooldownMinutes * 60_000L;
+    }
+
+    private int releasedHints(Level lev, long st) {
+        return hintCooldownMillis() <= 0 ? lev.hintCount : Math.min(NodeSession.hintsReleased(st), lev.hintCount);
+    }
+
+    private long hintDueAt(int slot) {
+        NodeSession s = directory.session(slot);
+        return s == null ? -1 : hintDueAt(slot, s.state());
+    }
+
+    /**
+     * Window time (see EventClock) the word's next hint is due at, or -1 if
+     * none will be released in this window. Deadlines are compared against
+     * clock.elapsedMillis() — nanoTime-based and frozen while paused — never
+     * against the host's wall clock.
+     */
+    private long hintDueAt(int slot, long st) {
+        long cooldown = hintCooldownMillis();
+        if (cooldown <= 0 || !NodeSession.authenticated(st) || NodeSession.locked(st) || NodeSession.unlocked(st)
+                || !isActive())
+            return -1;
+        int released = NodeSession.hintsReleased(st);
+        if (released >= currentLevel(slot, NodeSession.level(st)).hintCount)
+            return -1;
+        long due = NodeSession.enteredAt(st) * 1000L + (released + 1) * cooldown;
+        return due < clock.durationMillis(clock.state()) ? due : -1;
+    }
+
+    /** The next hint's deadline as clients are given it — epoch millis — or -1. */
+    private long hintDueAtEpochMillis(int slot, long st) {
+        long due = hintDueAt(slot, st);
+        // the clock's origin is the wall-clock instant of window time 0, so the value is the same on every read
+        return due < 0 ? -1 : clock.state().getOriginEpochMillis() + due;
+    }
+
+    /** @return false if no hint was due — the word moved on, or the window closed. */
+    private boolean releaseHint(int slot) {
+        if (!ownsSlot.test(slot))
+            return false; // the owning instance releases it and replicates the word here
+        NodeSession s = directory.view(slot);
+        while (true) {
+            long st = s.state();
+            long due = hintDueAt(slot, st);
+            if (due < 0 || due > clock.elapsedMillis())
+                return false;
+            long next = NodeSession.withHintReleased(st);
+            if (s.compareAndSet(st, next)) {
+                publish(SessionEvent.Type.HINT, slot, next);
+                return true;
+            }
+        }
+    }
+
+    /** Seconds of window time so far; 0 before the start, so a level entered early starts with the event. */
+    private int eventSecond() {
+        return (int) Math.min(clock.elapsedMillis() / 1000, NodeSession.MAX_ENTERED_AT);
     }
 
     // ════════════════════════════════════════════════════════════════
     // ADMIN
     // ════════════════════════════════════════════════════════════════
 
+    /** Opens a fresh window; a paused one is discarded — resume it instead to keep its time. */
     public Map<String, Object> startEvent() {
-        if (isActive())
+        if (!clock.start())
             return Map.of("status", "ALREADY_RUNNING", "message", "Already running.", "timeRemainingSeconds",
                     getTimeRemainingSeconds());
-        eventStarted = true;
-        eventStartTime = LocalDateTime.now();
         log.info("[ADMIN] Event STARTED");
+        clockChanged(SessionEvent.Type.EVENT_START);
         return Map.of("status", "STARTED", "message", "Event started.");
     }
 
     public void endEvent() {
-        eventStarted = false;
+        clock.end();
         log.info("[ADMIN] Event ENDED");
+        clockChanged(SessionEvent.Type.EVENT_END);
     }
 
-    public Map<String, Object> getAdminStatus() {
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("eventActive", isActive());
-        resp.put("eventStarted", eventStarted);
-        resp.put("timeRemainingSeconds", getTimeRemainingSeconds());
+    /** Freezes the window: submits are refused and hints held until it resumes. */
+    public Map<String, Object> pauseEvent() {
+        if (!clock.pause())
+            return Map.of("status", "NOT_RUNNING", "message", "No open window to pause.");
+        long left = getTimeRemainingSeconds();
+        log.info("[ADMIN] Event PAUSED — {} s left", left);
+        clockChanged(SessionEvent.Type.EVENT_PAUSE);
+        return Map.of("status", "PAUSED", "message", "Event paused.", "timeRemainingSeconds", left);
+    }
+
+    public Map<String, Object> resumeEvent() {
+        if (!clock.resume())
+            return Map.of("status", "NOT_PAUSED", "message", "The event is not paused.");
+        log.info("[ADMIN] Event RESUMED");
+        clockChanged(SessionEvent.Type.EVENT_RESUME);
+        return Map.of("status", "RESUMED", "message", "Event resumed.", "timeRemainingSeconds",
+                getTimeRemainingSeconds());
+    }
+
+    /** Adds time to a started window — one that already ran out reopens. */
+    public Map<String, Object> extendEvent(long seconds) {
+        if (!clock.extend(seconds * 1000))
+            return Map.of("status", "NOT_STARTED", "message", "Start the event before extending it.");
+        log.info("[ADMIN] Event EXTENDED by {} s", seconds);
+        clockChanged(SessionEvent.Type.EVENT_EXTEND);
+        return Map.of("status", "EXTENDED", "message", "Event extended by " + seconds + " s.",
+                "timeRemainingSeconds", getTimeRemainingSeconds());
+    }
+
+    /** Persists the new clock setting; streams, the journal and every ETag follow it. */
+    private void clockChanged(SessionEvent.Type type) {
+        store.putEventState(clock.state());
+        hints.scheduleAll();
+        eventChanged();
+        audit.recordEventWide(type);
+        events.publishEvent(SessionEvent.eventWide(type));
+    }
+
+    /**
+     * Dashboard read served from the live aggregate — see AdminAggregate.
+     *
+     * @param team  raw team ID, or null for every team
+     * @param level 1-3, or 0 for every level
+     * @param state idle | active | locked | unlocked, or null for all
+     * @param since aggregate version from a previous read to get only the
+     *              rows changed after it (and "removed", those that left the
+     *              filter), or -1 for page {@code page}
+     */
+    public Map<String, Object> getAdminStatus(String team, int level, String state, int page, int size, long since) {
+        Map<String, Object> resp = new LinkedHashMap<>();
+        long clk = clock.read();
+        EventClock.State c = clock.state();
+        resp.put("eventActive", EventClock.open(clk));
+        resp.put("eventStarted", c.isStarted());
+        resp.put("eventPaused", EventClock.paused(clk));
+        resp.put("timeRemainingSeconds", EventClock.remainingSeconds(clk));
+        resp.put("eventEndsAt", clock.endsAtEpochMillis());
         resp.put("durationMinutes", durationMinutes);
-        List<Map<String, Object>> nodes = new ArrayList<>();
-        sessions.forEach((key, s) -> {
-            Map<String, Object> n = new HashMap<>();
-            n.put("teamId", s.getTeamId());
-            n.put("nodeId", s.getNodeId());
-            n.put("authenticated", s.isAuthenticated());
-            n.put("level", s.getCurrentLevel());
-            n.put("attemptsUsed", s.getLevelAttempts());
-            n.put("attemptsRemaining", s.getLevelAttemptsRemaining());
-            n.put("unlocked", s.isUnlocked());
-            n.put("locked", s.isPermanentlyLocked());
-            PuzzleSet ps = PUZZLES.get(s.getTeamId());
-            n.put("keyword", ps != null ? ps.keyword : "N/A");
-            n.put("checksum", ps != null ? ps.checksum : 0);
-            nodes.add(n);
-        });
-        nodes.sort(Comparator.comparing(m -> m.get("teamId").toString() + m.get("nodeId").toString()));
-        resp.put("nodes", nodes);
+        resp.put("extensionSeconds", c.getExtensionMillis() / 1000);
+        resp.put("totals", aggregate.totals());
+        int teamIndex = -1;
+        if (team != null && !team.isBlank()) {
+            teamIndex = directory.team(team);
+            if (teamIndex == SessionDirectory.NONE) {
+                resp.put("version", aggregate.version());
+                resp.put("matched", 0);
+                resp.put("nodes", List.of());
+                return resp;
+            }
+        }
+        resp.put("page", page);
+        resp.put("size", size);
+        aggregate.query(teamIndex, level, state, page, size, since, resp);
         return resp;
     }
 
-    public void resetNode(String teamId, String nodeId) {
-        NodeSession fresh = new NodeSession(teamId, nodeId);
-        fresh.setAuthenticated(true);
-        sessions.put(teamId + "_" + nodeId, fresh);
-        log.info("[ADMIN] Reset: {} / {}", teamId, nodeId);
+    private Map<String, Object> adminRow(int slot, long st) {
+        Map<String, Object> n = new LinkedHashMap<>();
+        PuzzleSet ps = puzzles[SessionDirectory.teamOf(slot)];
+        n.put("teamId", directory.teamId(SessionDirectory.teamOf(slot)));
+        n.put("nodeId", directory.nodeId(slot));
+        n.put("authenticated", NodeSession.authenticated(st));
+        n.put("level", NodeSession.level(st));
+        n.put("attemptsUsed", NodeSession.attempts(st));
+        n.put("attemptsRemaining", NodeSession.attemptsRemaining(st));
+        n.put("unlocked", NodeSession.unlocked(st));
+        n.put("locked", NodeSession.locked(st));
+        n.put("state", AdminAggregate.stateOf(st));
+        n.put("keyword", ps.keyword);
+        n.put("checksum", ps.checksum);
+        return Collections.unmodifiableMap(n);
+    }
+
+    /** @return false if the node is not on the roster. */
+    public boolean resetNode(String teamId, String nodeId) {
+        int slot = resolve(teamId, nodeId);
+        if (slot == SessionDirectory.NONE)
+            return false;
+        NodeSession s = directory.view(slot);
+        // one CAS: a submit racing the reset sees the old word or a logged-in fresh one
+        s.reset(eventSecond(), true);
+        hints.schedule(slot);
+        log.debug("[ADMIN] Reset: {} / {}", s.getTeamId(), s.getNodeId());
+        publish(SessionEvent.Type.RESET, slot);
+        return true;
     }
 
     public List<Map<String, String>> getCredentialsSheet() {
         List<Map<String, String>> sheet = new ArrayList<>();
-        credentials.forEach((key, accessKey) -> {
-            String[] parts = key.split("_", 2);
-            if (parts.length == 2) {
-                PuzzleSet p = getPuzzle(parts[0]);
-                Map<String, String> row = new LinkedHashMap<>();
-                row.put("teamId", parts[0]);
-                row.put("nodeId", parts[1]);
-                row.put("accessKey", accessKey);
-                row.put("cipher", parts[1].endsWith("01") ? p.node1Type : p.node2Type);
-                row.put("keyword", p.keyword);
-                row.put("checksum", String.valueOf(p.checksum));
-                sheet.add(row);
-            }
-        });
-        sheet.sort(Comparator.comparing(m -> m.get("teamId") + "_" + m.get("nodeId")));
+        for (int slot = 0; slot < directory.slots(); slot++) {
+            if (!credentials.has(slot))
+                continue;
+            PuzzleSet p = puzzles[SessionDirectory.teamOf(slot)];
+            boolean node1 = SessionDirectory.isNode1(slot);
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put("teamId", directory.teamId(SessionDirectory.teamOf(slot)));
+            row.put("nodeId", directory.nodeId(slot));
+            row.put("accessKey", credentials.key(slot));
+            row.put("cipher", node1 ? p.node1Type : p.node2Type);
+            row.put("keyword", p.keyword);
+            row.put("checksum", String.valueOf(p.checksum));
+            sheet.add(row);
+        }
         return sheet;
     }
 
+    // ── Streamed export — same rows, written as they are produced ──
+
+    private static final byte[] CSV_HEADER = JsonBytes.ascii("teamId,nodeId,accessKey,cipher,keyword,checksum\n");
+    private static final byte[] F_TEAM_ID = JsonBytes.name("teamId");
+    private static final byte[] F_NODE_ID = JsonBytes.name("nodeId");
+    private static final byte[] F_ACCESS_KEY = JsonBytes.name("accessKey");
+    private static final byte[] F_CIPHER = JsonBytes.name("cipher");
+    private static final byte[] F_KEYWORD = JsonBytes.name("keyword");
+    private static final byte[] F_CHECKSUM = JsonBytes.name("checksum");
+
+    /** The credential sheet as CSV with a header line, in roster order. Memory use is one row. */
+    public void writeCredentialsCsv(OutputStream out) throws IOException {
+        out.write(CSV_HEADER);
+        for (int slot = 0; slot < directory.slots(); slot++) {
+            if (!credentials.has(slot))
+                continue;
+            PuzzleSet p = puzzles[SessionDirectory.teamOf(slot)];
+            writeCsvField(out, directory.teamId(SessionDirectory.teamOf(slot)));
+            out.write(',');
+            writeCsvField(out, directory.nodeId(slot));
+            out.write(',');
+            writeCsvField(out, credentials.key(slot));
+            out.write(',');
+            writeCsvField(out, SessionDirectory.isNode1(slot) ? p.node1Type : p.node2Type);
+            out.write(',');
+            writeCsvField(out, p.keyword);
+            out.write(',');
+            JsonBytes.write(out, p.checksum);
+            out.write('\n');
+        }
+    }
+
+    /** The credential sheet as one JSON object per line, in roster order. */
+    public void writeCredentialsNdjson(OutputStream out) throws IOException {
+        for (int slot = 0; slot < directory.slots(); slot++) {
+            if (!credentials.has(slot))
+                continue;
+            PuzzleSet p = puzzles[SessionDirectory.teamOf(slot)];
+            out.write('{');
+            out.write(F_TEAM_ID);
+            JsonBytes.write(out, directory.teamId(SessionDirectory.teamOf(slot)));
+            out.write(',');
+            out.write(F_NODE_ID);
+            JsonBytes.write(out, directory.nodeId(slot));
+            out.write(',');
+            out.write(F_ACCESS_KEY);
+            JsonBytes.write(out, credentials.key(slot));
+            out.write(',');
+            out.write(F_CIPHER);
+            JsonBytes.write(out, SessionDirectory.isNode1(slot) ? p.node1Type : p.node2Type);
+            out.write(',');
+            out.write(F_KEYWORD);
+            JsonBytes.write(out, p.keyword);
+            out.write(',');
+            out.write(F_CHECKSUM);
+            // a string, as in the JSON sheet
+            JsonBytes.write(out, String.valueOf(p.checksum));
+            out.write('}');
+            out.write('\n');
+        }
+    }
+
+    /** RFC 4180: quoted only if it holds a comma, quote or line break. */
+    private static void writeCsvField(OutputStream out, String s) throws IOException {
+        boolean quote = false, ascii = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            quote |= c == ',' || c == '"' || c == '\n' || c == '\r';
+            ascii &= c < 0x80;
+        }
+        if (!quote && ascii) {
+            for (int i = 0; i < s.length(); i++)
+                out.write(s.charAt(i));
+            return;
+        }
+        if (!quote) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        out.write('"');
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // LEADERBOARD
+    // ════════════════════════════════════════════════════════════════
+
+    private static final Comparator<Map<String, Object>> LEADER_ORDER = Comparator
+            .<Map<String, Object>>comparingInt(r -> -((Number) r.get("levelsCleared")).intValue())
+            .thenComparingInt(r -> ((Number) r.get("lastAdvanceAt")).intValue())
+            .thenComparing(r -> (String) r.get("teamId"));
+
+    /** Entity tag for the leaderboard body — moves only when some team's place does. */
+    public String leaderboardETag() {
+        return '"' + bootTag + ".lb." + leaderboard.version() + '"';
+    }
+
+    /**
+     * Entity tag for a board merged from several instances — see
+     * mergeLeaderboards. No one version covers it, so the tag digests what it
+     * shows; every instance gives the same board the same tag.
+     */
+    @SuppressWarnings("unchecked")
+    public static String mergedLeaderboardETag(Map<String, Object> merged) {
+        long h = Boolean.TRUE.equals(merged.get("partial")) ? 1 : 0;
+        for (Map<String, Object> row : (List<Map<String, Object>>) merged.get("leaders")) {
+            h = h * 1_000_003 + row.get("teamId").hashCode();
+            h = h * 1_000_003 + ((Number) row.get("levelsCleared")).intValue();
+            h = h * 1_000_003 + ((Number) row.get("lastAdvanceAt")).intValue();
+        }
+        return "\"lbm." + Long.toString(h, 36) + '"';
+    }
+
+    /**
+     * The best {@code limit} teams, best first, read off the live ranking —
+     * see Leaderboard. Teams level on both count and time share a rank.
+     *
+     * @param ownedOnly list only the teams this instance owns — a cluster instance's share of the board
+     */
+    public Map<String, Object> getLeaderboard(int limit, boolean ownedOnly) {
+        long[] top = new long[limit];
+        int n = leaderboard.top(top, ownedOnly);
+        List<Map<String, Object>> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("teamId", directory.teamId(Leaderboard.team(top[i])));
+            row.put("levelsCleared", Leaderboard.levelsCleared(top[i]));
+            row.put("lastAdvanceAt", Leaderboard.lastAdvanceAt(top[i]));
+            row.put("unlocked", Leaderboard.levelsCleared(top[i]) == Leaderboard.MAX_CLEARED);
+            rows.add(row);
+        }
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("version", leaderboard.version());
+        resp.put("rankedTeams", leaderboard.size());
+        resp.put("leaders", ranked(rows));
+        return resp;
+    }
+
+    /**
+     * One board from several instances' boards of the teams each owns; a null
+     * part is an instance that did not answer, and marks the result partial.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> mergeLeaderboards(List<Map<String, Object>> parts, int limit) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        boolean partial = false;
+        for (Map<String, Object> part : parts) {
+            if (part == null || !(part.get("leaders") instanceof List)) {
+                partial = true;
+                continue;
+            }
+            rows.addAll((List<Map<String, Object>>) part.get("leaders"));
+        }
+        rows.sort(LEADER_ORDER);
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("partial", partial);
+        resp.put("leaders", ranked(rows.subList(0, Math.min(limit, rows.size()))));
+        return resp;
+    }
+
+    /** Rows in order, each prefixed with its rank: 1, 2, 2, 4 when the 2nd and 3rd tie. */
+    private static List<Map<String, Object>> ranked(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> out = new ArrayList<>(rows.size());
+        Map<String, Object> prev = null;
+        int rank = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            if (prev == null || !row.get("levelsCleared").equals(prev.get("levelsCleared"))
+                    || !row.get("lastAdvanceAt").equals(prev.get("lastAdvanceAt")))
+                rank = i + 1;
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("rank", rank);
+            row.forEach((k, v) -> {
+                if (!k.equals("rank"))
+                    r.put(k, v);
+            });
+            out.add(r);
+            prev = row;
+        }
+        return out;
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // PERSISTENCE HOOKS — used by SessionJournal to snapshot and replay
+    // ════════════════════════════════════════════════════════════════
+
+    public NodeSession getSession(String teamId, String nodeId) {
+        return sessionFor(teamId, nodeId);
+    }
+
+    public void forEachSession(Consumer<NodeSession> action) {
+        for (int slot = 0; slot < directory.slots(); slot++) {
+            NodeSession s = directory.session(slot);
+            if (s != null)
+                action.accept(s);
+        }
+    }
+
+    public EventClock.State getEventClock() {
+        return clock.state();
+    }
+
+    /**
+     * Applies a journaled state word; publishes nothing. A word older than the
+     * slot already holds (the mapped store ran ahead of the journal) is ignored.
+     */
+    public void restoreNode(String teamId, String nodeId, long state) {
+        int slot = resolve(teamId, nodeId);
+        if (slot == SessionDirectory.NONE) {
+            log.warn("[RESTORE] {} / {} is no longer on the roster — skipped.", teamId, nodeId);
+            return;
+        }
+        NodeSession s = directory.view(slot);
+        long cur = s.state();
+        if (cur != 0L && NodeSession.version(state) < NodeSession.version(cur))
+            return;
+        s.restoreState(state);
+        aggregate.update(slot);
+        leaderboard.update(slot);
+        hints.schedule(slot);
+    }
+
+    public void restoreEvent(EventClock.State saved) {
+        clock.restore(saved);
+        store.putEventState(saved);
+        hints.scheduleAll();
+        eventChanged();
+    }
+
+    private void eventChanged() {
+        eventVersion.incrementAndGet();
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // CLUSTER HOOKS — used by ClusterService
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * Slots this instance may move on its own — hint releases are the only
+     * transition no request asks for. Every slot unless clustered.
+     */
+    void setSlotOwnership(IntPredicate owns) {
+        ownsSlot = owns;
+        leaderboard.setOwnership(team -> owns.test(team << 1));
+        hints.scheduleAll();
+    }
+
+    /** Cluster membership moved — some slots' owner may now be this instance. */
+    void ownershipChanged() {
+        IntPredicate owns = ownsSlot;
+        leaderboard.setOwnership(team -> owns.test(team << 1));
+        hints.scheduleAll();
+    }
+
+    /** The slot's state word; 0 if it has no session. */
+    long stateOf(int slot) {
+        NodeSession s = directory.view(slot);
+        return s == null ? 0L : s.state();
+    }
+
+    /**
+     * Takes another instance's word for the slot if {@code replaces} accepts
+     * it over ours, and publishes it as a REPLICA, so streams, the journal
+     * and the dashboard see it like a local transition. An empty slot takes
+     * any word.
+     *
+     * @return false if ours was kept
+     */
+    boolean applyReplica(int slot, long word, LongPredicate replaces) {
+        NodeSession s = directory.view(slot);
+        if (s == null || word == 0L)
+            return false;
+        while (true) {
+            long cur = s.state();
+            if (cur != 0L && !replaces.test(cur))
+                return false;
+            if (s.compareAndSet(cur, word))
+                break;
+        }
+        hints.schedule(slot);
+        publish(SessionEvent.Type.REPLICA, slot, word);
+        return true;
+    }
+
+    void applyReplicaClock(EventClock.State replica) {
+        restoreEvent(replica);
+        audit.recordEventWide(SessionEvent.Type.EVENT_SYNC);
+        events.publishEvent(SessionEvent.eventWide(SessionEvent.Type.EVENT_SYNC));
+    }
+
+    /** Hash of the roster in slot order — instances only exchange slots if theirs agree. */
+    long rosterFingerprint() {
+        long h = 17;
+        for (int slot = 0; slot < directory.slots(); slot++)
+            h = h * 31 + HashRing.hash(teamIdOf(slot) + '/' + directory.nodeId(slot));
+        return h;
+    }
+
     // ════════════════════════════════════════════════════════════════
     // HELPERS
     // ════════════════════════════════════════════════════════════════
 
-    private Level currentLevel(String teamId, String nodeId, NodeSession s) {
-        PuzzleSet p = getPuzzle(teamId);
-        Level[] lev = isNode1(nodeId) ? p.node1Levels : p.node2Levels;
-        return lev[Math.min(s.getCurrentLevel() - 1, 2)];
+    /** Slot of a raw team/node pair, or SessionDirectory.NONE. */
+    public int resolve(String teamId, String nodeId) {
+        return directory.slot(teamId, nodeId);
+    }
+
+    /** Number of node slots — two per team on the roster. */
+    public int slotCount() {
+        return directory.slots();
+    }
+
+    /** Canonical team ID of a slot — the key SessionEvents carry. */
+    public String teamIdOf(int slot) {
+        return directory.teamId(SessionDirectory.teamOf(slot));
+    }
+
+    private NodeSession sessionFor(String teamId, String nodeId) {
+        int slot = directory.slot(teamId, nodeId);
+        return slot == SessionDirectory.NONE ? null : directory.session(slot);
     }
 
-    private PuzzleSet getPuzzle(String teamId) {
+    private Level currentLevel(int slot, int level) {
+        return puzzles[SessionDirectory.teamOf(slot)].levels(slot)[Math.min(level - 1, 2)];
+    }
+
+    private static PuzzleSet resolvePuzzle(String teamId) {
         PuzzleSet p = PUZZLES.get(teamId);
         if (p != null)
             return p;
-        List<PuzzleSet> all = new ArrayList<>(PUZZLES.values());
-        int num = 0;
-        try {
-            num = Integer.parseInt(teamId.replaceAll("[^0-9]", ""));
-        } catch (Exception ignored) {
+        // the team's digits read as one number (0 if none or too long)
+        long num = 0;
+        for (int i = 0; i < teamId.length() && num <= Integer.MAX_VALUE; i++) {
+            char c = teamId.charAt(i);
+            if (c >= '0' && c <= '9')
+                num = num * 10 + (c - '0');
         }
-        return all.get(num % all.size());
+        return REGISTRY[num > Integer.MAX_VALUE ? 0 : (int) (num % REGISTRY.length)];
+    }
+
+    /** Every node transition ends here: admin totals, ranking, the audit log, then the listeners. */
+    private void publish(SessionEvent.Type type, int slot) {
+        publish(type, slot, stateOf(slot));
+    }
+
+    /** {@code word} is the state the transition's CAS installed. */
+    private void publish(SessionEvent.Type type, int slot, long word) {
+        aggregate.update(slot);
+        leaderboard.update(slot);
+        audit.record(type, teamIdOf(slot), directory.nodeId(slot), word);
+        events.publishEvent(new SessionEvent(type, teamIdOf(slot), directory.nodeId(slot), word));
     }
 
-    private boolean isNode1(String nodeId) {
+    private static boolean isNode1(String nodeId) {
         return nodeId.endsWith("01") || nodeId.equals("SYS-01");
     }
 
     // legacy helpers (still used externally)
     public String getCipherText(String teamId, String nodeId) {
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
-        return currentLevel(teamId, nodeId, s != null ? s : new NodeSession(teamId, nodeId)).cipherText;
+        return legacyLevel(teamId, nodeId).cipherText;
     }
 
     public String getCipherType(String teamId, String nodeId) {
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
-        return currentLevel(teamId, nodeId, s != null ? s : new NodeSession(teamId, nodeId)).cipherType;
+        return legacyLevel(teamId, nodeId).cipherType;
     }
 
     public String[] getHints(String teamId, String nodeId) {
-        NodeSession s = sessions.get(teamId + "_" + nodeId);
-        return currentLevel(teamId, nodeId, s != null ? s : new NodeSession(teamId, nodeId)).hints;
+        return legacyLevel(teamId, nodeId).hints;
+    }
+
+    private Level legacyLevel(String teamId, String nodeId) {
+        int slot = resolve(teamId, nodeId);
+        if (slot == SessionDirectory.NONE)
+            return resolvePuzzle(teamId).levels(nodeId)[0];
+        NodeSession s = directory.session(slot);
+        return currentLevel(slot, s != null ? s.getCurrentLevel() : 1);
+    }
+
+    // ── Timer — see EventClock ────────────────────────────────────
+    /** End of the decryption window as epoch millis; -1 if never started or while paused. */
+    public long getEventEndsAtEpochMillis() {
+        return clock.endsAtEpochMillis();
     }
 
-    // ── Timer ─────────────────────────────────────────────────────
-    private LocalDateTime eventEnd() {
-        if (eventStartTime == null)
-            return LocalDateTime.MIN;
-        return durationSeconds > 0 ? eventStartTime.plusSeconds(durationSeconds)
-                : eventStartTime.plusMinutes(durationMinutes);
+    /** One packed {@link EventClock#read()} — decode with EventClock's static helpers. */
+    public long getEventClockReading() {
+        return clock.read();
     }
 
     public boolean isActive() {
-        return eventStarted && eventStartTime != null && LocalDateTime.now().isBefore(eventEnd());
+        return EventClock.open(clock.read());
     }
 
+    /** Frozen while paused, 0 once the window has closed. */
     public long getTimeRemainingSeconds() {
-        return isActive() ? Math.max(0, Duration.between(LocalDateTime.now(), eventEnd()).getSeconds()) : 0;
+        return EventClock.remainingSeconds(clock.read());
     }
 }
@@ -0,0 +1,161 @@
+package com.twinlock.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The window's transitions against the real clocks. Timing assertions allow
+ * a generous slack (SLACK) so a loaded build machine doesn't fail them; what
+ * they pin down is which way each reading moves, and that a pause freezes it.
+ */
+class EventClockTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long SLACK = 1000;
+
+    @Test
+    void neverStartedReadsClosedAndRefusesEverything() {
+        EventClock clock = new EventClock(MINUTE);
+
+        assertEquals(0L, clock.read());
+        assertEquals(0, clock.elapsedMillis());
+        assertEquals(-1, clock.endsAtEpochMillis());
+        assertFalse(clock.pause());
+        assertFalse(clock.resume());
+        assertFalse(clock.extend(MINUTE));
+    }
+
+    @Test
+    void startOpensTheFullWindowOnce() {
+        EventClock clock = new EventClock(MINUTE);
+        long before = System.currentTimeMillis();
+        assertTrue(clock.start());
+        assertFalse(clock.start()); // already open
+
+        long r = clock.read();
+        assertTrue(EventClock.open(r));
+        assertFalse(EventClock.paused(r));
+        assertNear(MINUTE, EventClock.remainingMillis(r));
+        assertNear(before + MINUTE, clock.endsAtEpochMillis());
+    }
+
+    @Test
+    void pauseFreezesTheWindowAndResumePushesTheEndOut() throws Exception {
+        EventClock clock = new EventClock(MINUTE);
+        clock.start();
+        long endsAt = clock.endsAtEpochMillis();
+        assertTrue(clock.pause());
+        assertFalse(clock.pause());
+
+        long r = clock.read();
+        long elapsed = clock.elapsedMillis();
+        assertFalse(EventClock.open(r));
+        assertTrue(EventClock.paused(r));
+        assertEquals(-1, clock.endsAtEpochMillis()); // no end is fixed while paused
+        Thread.sleep(300);
+        assertEquals(r, clock.read());
+        assertEquals(elapsed, clock.elapsedMillis());
+
+        assertTrue(clock.resume());
+        assertFalse(clock.resume());
+        r = clock.read();
+        assertTrue(EventClock.open(r));
+        assertNear(MINUTE - elapsed, EventClock.remainingMillis(r));
+        assertTrue(clock.elapsedMillis() >= elapsed);
+        assertTrue(clock.endsAtEpochMillis() >= endsAt + 290, "end moved out by the pause"); // ms rounding
+    }
+
+    @Test
+    void extendLengthensOpenPausedAndRunOutWindows() throws Exception {
+        EventClock clock = new EventClock(MINUTE);
+        clock.start();
+        assertFalse(clock.extend(0));
+        assertTrue(clock.extend(MINUTE));
+        assertNear(2 * MINUTE, EventClock.remainingMillis(clock.read()));
+
+        clock.pause();
+        assertTrue(clock.extend(MINUTE));
+        long r = clock.read();
+        assertTrue(EventClock.paused(r));
+        assertNear(3 * MINUTE, EventClock.remainingMillis(r));
+
+        EventClock shortOne = new EventClock(50);
+        shortOne.start();
+        Thread.sleep(150);
+        assertFalse(EventClock.open(shortOne.read()));
+        assertEquals(50, shortOne.elapsedMillis()); // capped at the duration
+        assertTrue(shortOne.extend(MINUTE)); // ran out but not ended: reopens
+        assertTrue(EventClock.open(shortOne.read()));
+    }
+
+    @Test
+    void endClosesForGoodAndStartBeginsAFreshWindow() {
+        EventClock clock = new EventClock(MINUTE);
+        clock.start();
+        clock.extend(MINUTE);
+        clock.end();
+
+        assertEquals(0L, clock.read());
+        assertEquals(-1, clock.endsAtEpochMillis());
+        assertFalse(clock.extend(MINUTE));
+        assertFalse(clock.resume());
+
+        assertTrue(clock.start());
+        assertEquals(0, clock.state().getExtensionMillis());
+        assertNear(MINUTE, EventClock.remainingMillis(clock.read()));
+    }
+
+    @Test
+    void restoredWindowIsReanchoredThroughTheWallClock() {
+        EventClock clock = new EventClock(MINUTE);
+        long origin = System.currentTimeMillis() - 10_000;
+        clock.restore(EventClock.State.restored(true, false, origin, 0, MINUTE));
+
+        assertNear(10_000, clock.elapsedMillis());
+        assertNear(2 * MINUTE - 10_000, EventClock.remainingMillis(clock.read()));
+        assertEquals(origin + 2 * MINUTE, clock.endsAtEpochMillis());
+
+        clock.restore(EventClock.State.restored(true, true, origin, 20_000, 0));
+        long r = clock.read();
+        assertTrue(EventClock.paused(r));
+        assertEquals(MINUTE - 20_000, EventClock.remainingMillis(r));
+        assertEquals(20_000, clock.elapsedMillis());
+    }
+
+    @Test
+    void racingStartsOpenOneWindow() throws Exception {
+        EventClock clock = new EventClock(MINUTE);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> starts = new ArrayList<>();
+            for (int t = 0; t < 8; t++)
+                starts.add(pool.submit(() -> {
+                    go.await();
+                    return clock.start();
+                }));
+            go.countDown();
+            int opened = 0;
+            for (Future<Boolean> f : starts)
+                opened += f.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            assertEquals(1, opened);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= SLACK, "expected ~" + expected + " but was " + actual);
+    }
+}
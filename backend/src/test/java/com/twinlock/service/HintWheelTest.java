@@ -0,0 +1,145 @@
+package com.twinlock.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The wheel on a hand-driven clock: each test moves window time and runs
+ * ticks itself. A slot's hints fall due one cooldown apart from when it
+ * entered its level, as in TwinLockService, and a release is recorded with
+ * the window time it happened at.
+ */
+class HintWheelTest {
+
+    private static final long COOLDOWN = 5000;
+    private static final int HINTS = 3;
+    private static final int SLOTS = 1000;
+
+    private long now; // window time, millis
+    private final long[] enteredAt = new long[SLOTS];
+    private final int[] released = new int[SLOTS];
+    private final List<List<Long>> releases = new ArrayList<>();
+    private HintWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        for (int slot = 0; slot < SLOTS; slot++)
+            releases.add(new ArrayList<>());
+        wheel = new HintWheel(SLOTS, () -> now, this::dueAt, slot -> {
+            if (dueAt(slot) < 0 || dueAt(slot) > now)
+                return false;
+            released[slot]++;
+            releases.get(slot).add(now);
+            return true;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void releasesOneHintPerCooldownThenStops() {
+        enter(7, 0);
+        runUntil(30_000);
+
+        assertEquals(List.of(5000L, 10_000L, 15_000L), releases.get(7));
+    }
+
+    @Test
+    void everySlotGetsItsOwnSchedule() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            now = slot % 5 * 1000L;
+            enter(slot, now);
+        }
+        runUntil(25_000);
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long entered = slot % 5 * 1000L;
+            assertEquals(List.of(entered + COOLDOWN, entered + 2 * COOLDOWN, entered + 3 * COOLDOWN),
+                    releases.get(slot), "slot " + slot);
+        }
+    }
+
+    @Test
+    void aMovedDeadlineNeedsNoCancel() {
+        enter(3, 0);
+        runUntil(3000);
+        // a level-up at 3 s restarts the cooldown; the entry filed for 5 s finds nothing due
+        enter(3, 3000);
+        runUntil(12_000);
+
+        assertEquals(List.of(8000L), releases.get(3));
+    }
+
+    @Test
+    void standsStillWhileWindowTimeDoes() {
+        enter(1, 0);
+        runUntil(4000);
+        // paused: ticks keep coming, window time doesn't move
+        for (int i = 0; i < 10; i++)
+            wheel.advance();
+        assertEquals(0, released[1]);
+
+        runUntil(5000);
+        assertEquals(List.of(5000L), releases.get(1));
+    }
+
+    @Test
+    void aStallReleasesWhatFellDueInOneTick() {
+        enter(2, 0);
+        wheel.advance();
+        now = 12_000;
+        wheel.advance();
+
+        assertEquals(List.of(12_000L, 12_000L), releases.get(2));
+        runUntil(20_000);
+        assertEquals(List.of(12_000L, 12_000L, 15_000L), releases.get(2));
+    }
+
+    @Test
+    void aNewWindowRewindsTheWheel() {
+        enter(4, 0);
+        runUntil(20_000);
+        assertEquals(HINTS, released[4]);
+
+        // the event restarts: window time begins again at 0 and every slot is rescanned
+        now = 0;
+        enteredAt[4] = 0;
+        released[4] = 0;
+        releases.get(4).clear();
+        wheel.scheduleAll();
+        runUntil(11_000);
+
+        assertEquals(List.of(5000L, 10_000L), releases.get(4));
+    }
+
+    // ── helpers ─────────────────────────────────────────────────────
+
+    /** Window time of the slot's next hint, or -1 once all are out. */
+    private long dueAt(int slot) {
+        return released[slot] < HINTS ? enteredAt[slot] + (released[slot] + 1) * COOLDOWN : -1;
+    }
+
+    private void enter(int slot, long at) {
+        enteredAt[slot] = at;
+        released[slot] = 0;
+        wheel.schedule(slot);
+    }
+
+    /** One tick per window second up to {@code until}. */
+    private void runUntil(long until) {
+        wheel.advance();
+        while (now < until) {
+            now += 1000;
+            wheel.advance();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The live ranking over a hand-built roster: words are written straight into
+ * the session store and each change is reported with update(slot), as
+ * TwinLockService does after a transition.
+ */
+class LeaderboardTest {
+
+    private static final int TEAMS = 8;
+
+    private SessionDirectory directory;
+    private Leaderboard board;
+
+    @BeforeEach
+    void setUp() {
+        List<String> teamIds = new ArrayList<>();
+        String[] nodeIds = new String[TEAMS * 2];
+        for (int t = 0; t < TEAMS; t++) {
+            teamIds.add(String.format("TEAM%02d", t + 1));
+            nodeIds[2 * t] = "SYS-01";
+            nodeIds[2 * t + 1] = "SYS-02";
+        }
+        directory = new SessionDirectory(teamIds, nodeIds, new SessionStore.Heap(TEAMS * 2));
+        board = new Leaderboard(directory);
+    }
+
+    @Test
+    void ranksByLevelsThenEarliestAdvanceThenRoster() {
+        set(0, level(2, 50)); // 1 cleared
+        set(2, level(3, 40)); // 2 cleared
+        set(4, level(2, 30)); // 1 cleared, earlier than team 0
+        set(6, NodeSession.INITIAL); // logged in, nothing cleared
+        set(8, NodeSession.INITIAL);
+        set(10, level(2, 30)); // ties team 2 on count and time — roster order
+
+        assertEquals(List.of(1, 2, 5, 0, 3, 4), teams(false, TEAMS));
+        assertEquals(2, Leaderboard.levelsCleared(top(false, 1)[0]));
+        assertEquals(40, Leaderboard.lastAdvanceAt(top(false, 1)[0]));
+        // teams 6 and 7 never logged in: unranked
+        assertEquals(6, board.size());
+        assertEquals(List.of(1, 2), teams(false, 2));
+    }
+
+    @Test
+    void bothNodesCountAndAnUnlockIsThreeLevels() {
+        set(0, level(3, 20));
+        set(1, level(2, 25)); // team 0: 3 cleared, latest at 25
+        set(2, NodeSession.withUnlocked(level(3, 10), 30)); // team 1: 3 cleared at 30
+        set(5, NodeSession.withUnlocked(level(3, 10), 40));
+        set(4, NodeSession.withUnlocked(level(3, 10), 45)); // team 2: 6 cleared
+
+        long[] keys = top(false, TEAMS);
+        assertEquals(List.of(2, 0, 1), teams(false, TEAMS));
+        assertEquals(Leaderboard.MAX_CLEARED, Leaderboard.levelsCleared(keys[0]));
+        assertEquals(45, Leaderboard.lastAdvanceAt(keys[0]));
+        assertEquals(25, Leaderboard.lastAdvanceAt(keys[1]));
+    }
+
+    @Test
+    void aMoveReplacesTheTeamsEntryAndBumpsTheVersion() {
+        set(0, level(2, 10));
+        set(2, level(2, 20));
+        set(4, level(2, 30));
+        assertEquals(List.of(0, 1, 2), teams(false, TEAMS));
+
+        long version = board.version();
+        set(4, level(3, 40));
+        assertEquals(List.of(2, 0, 1), teams(false, TEAMS));
+        assertEquals(3, board.size());
+        assertEquals(version + 1, board.version());
+
+        // a transition that doesn't change the key (a wrong answer) leaves the board alone
+        set(4, NodeSession.failedAttempt(directory.view(4).state()));
+        assertEquals(version + 1, board.version());
+
+        // a reset drops the team back to the bottom
+        directory.view(4).reset(50, true);
+        board.update(4);
+        assertEquals(List.of(0, 1, 2), teams(false, TEAMS));
+    }
+
+    @Test
+    void ownedOnlyListsTheOwnedTeamsInRankOrder() {
+        for (int t = 0; t < TEAMS; t++)
+            set(2 * t, level(2, 100 - t)); // later teams advanced earlier
+        // no ownership set (standalone): ownedOnly is the full board
+        assertEquals(List.of(7, 6, 5, 4, 3, 2, 1, 0), teams(true, TEAMS));
+
+        board.setOwnership(team -> team % 2 == 0);
+        assertEquals(List.of(6, 4, 2, 0), teams(true, TEAMS));
+        assertEquals(List.of(6, 4), teams(true, 2));
+        assertEquals(TEAMS, teams(false, TEAMS).size());
+
+        // moves keep the owned list in order; unowned moves don't enter it
+        set(0, level(3, 5));
+        set(1, level(3, 6)); // team 0 — 3 cleared now
+        set(3, level(3, 1)); // team 1 — not ours
+        assertEquals(List.of(0, 6, 4, 2), teams(true, TEAMS));
+
+        // membership moved
+        board.setOwnership(team -> team % 2 == 1);
+        assertEquals(List.of(1, 7, 5, 3), teams(true, TEAMS));
+    }
+
+    // ── helpers ─────────────────────────────────────────────────────
+
+    /** A word on {@code level}, entered at event second {@code at}. */
+    private static long level(int level, int at) {
+        long st = NodeSession.INITIAL;
+        for (int l = 1; l < level; l++)
+            st = NodeSession.advanced(st, at);
+        return st;
+    }
+
+    private void set(int slot, long word) {
+        directory.view(slot).restoreState(word);
+        board.update(slot);
+    }
+
+    private long[] top(boolean ownedOnly, int k) {
+        long[] out = new long[k];
+        int n = board.top(out, ownedOnly);
+        long[] keys = new long[n];
+        System.arraycopy(out, 0, keys, 0, n);
+        return keys;
+    }
+
+    private List<Integer> teams(boolean ownedOnly, int k) {
+        List<Integer> teams = new ArrayList<>();
+        for (long key : top(ownedOnly, k))
+            teams.add(Leaderboard.team(key));
+        return teams;
+    }
+}
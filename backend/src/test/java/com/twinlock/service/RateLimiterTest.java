@@ -0,0 +1,144 @@
+package com.twinlock.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GCRA admission: a full bucket admits exactly its burst, then refuses with
+ * the wait until the next request would pass, and the refusal's
+ * Retry-After rounds that wait up to whole seconds.
+ */
+class RateLimiterTest {
+
+    private AnnotationConfigApplicationContext ctx;
+
+    @AfterEach
+    void tearDown() {
+        if (ctx != null)
+            ctx.close();
+    }
+
+    @Test
+    void addressBucketAdmitsItsBurstThenRefuses() {
+        RateLimiter limiter = limiter(Map.of(
+                "twinlock.rate-limit.ip-per-minute", 60,
+                "twinlock.rate-limit.ip-burst", 3));
+
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.admitAddress("10.0.0.1"));
+        long wait = limiter.admitAddress("10.0.0.1");
+        // one interval (1 s) minus the little time the admits took
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1), "wait " + wait);
+        assertEquals(1, RateLimiter.retryAfterSeconds(wait));
+
+        // a refusal spends nothing, and other addresses have their own bucket
+        assertTrue(limiter.admitAddress("10.0.0.1") > 0);
+        assertEquals(0, limiter.admitAddress("10.0.0.2"));
+    }
+
+    @Test
+    void nodeBucketIsSharedByEveryWayOfWritingTheIds() {
+        RateLimiter limiter = limiter(Map.of(
+                "twinlock.rate-limit.node-per-minute", 1,
+                "twinlock.rate-limit.node-burst", 2));
+
+        assertEquals(0, limiter.admitNode("TEAM01", "SYS-01"));
+        assertEquals(0, limiter.admitNode(" team01 ", "sys-01"));
+        long wait = limiter.admitNode("Team01", "Sys-01");
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(59), "wait " + wait);
+        assertEquals(60, RateLimiter.retryAfterSeconds(wait));
+
+        // the partner node and unknown nodes are not held back
+        assertEquals(0, limiter.admitNode("TEAM01", "SYS-02"));
+        for (int i = 0; i < 5; i++)
+            assertEquals(0, limiter.admitNode("TEAM99", "SYS-01"));
+    }
+
+    @Test
+    void concurrentAdmitsNeverExceedTheBurst() throws Exception {
+        // one token a minute: nothing refills while the threads run
+        RateLimiter limiter = limiter(Map.of(
+                "twinlock.rate-limit.ip-per-minute", 1,
+                "twinlock.rate-limit.ip-burst", 50,
+                "twinlock.rate-limit.node-per-minute", 1,
+                "twinlock.rate-limit.node-burst", 50));
+        AtomicInteger addressAdmits = new AtomicInteger();
+        AtomicInteger nodeAdmits = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < 16; t++)
+                running.add(pool.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.admitAddress("10.0.0.1") == 0)
+                            addressAdmits.incrementAndGet();
+                        if (limiter.admitNode("TEAM01", "SYS-01") == 0)
+                            nodeAdmits.incrementAndGet();
+                    }
+                    return null;
+                }));
+            go.countDown();
+            for (Future<?> f : running)
+                f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(50, addressAdmits.get());
+        assertEquals(50, nodeAdmits.get());
+    }
+
+    @Test
+    void disabledAdmitsEverything() {
+        RateLimiter limiter = limiter(Map.of(
+                "twinlock.rate-limit.enabled", false,
+                "twinlock.rate-limit.ip-burst", 1,
+                "twinlock.rate-limit.node-burst", 1));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.admitAddress("10.0.0.1"));
+            assertEquals(0, limiter.admitNode("TEAM01", "SYS-01"));
+        }
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSeconds() {
+        assertEquals(1, RateLimiter.retryAfterSeconds(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(2, RateLimiter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1) + 1));
+
+        Map<String, Object> body = RateLimiter.rejection(TimeUnit.MILLISECONDS.toNanos(2500));
+        assertEquals("RATE_LIMITED", body.get("status"));
+        assertEquals(3L, body.get("retryAfterSeconds"));
+    }
+
+    // ── helpers ─────────────────────────────────────────────────────
+
+    private RateLimiter limiter(Map<String, Object> props) {
+        Map<String, Object> all = new HashMap<>(props);
+        all.put("twinlock.team-count", 2);
+        all.put("twinlock.secret-salt", "TEST_SALT");
+        all.put("twinlock.audit.enabled", false);
+        ctx = new AnnotationConfigApplicationContext();
+        ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", all));
+        ctx.register(TwinLockService.class, AuditLog.class, RateLimiter.class);
+        ctx.refresh();
+        return ctx.getBean(RateLimiter.class);
+    }
+}
@@ -0,0 +1,173 @@
+package com.twinlock.service;
+
+import com.twinlock.model.EventClock;
+import com.twinlock.model.NodeSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recovery: a restart on a journal directory comes back to the state it was
+ * left in. A crash is simulated by copying the directory while the service
+ * runs — every answered transition is fsynced by then, so the copy is what a
+ * kill -9 would leave. A clean stop is the normal close, which snapshots.
+ */
+class SessionJournalTest {
+
+    private static final String[][] NODES = {
+            { "TEAM01", "SYS-01" }, { "TEAM01", "SYS-02" }, { "TEAM02", "SYS-01" }, { "TEAM02", "SYS-02" } };
+
+    @TempDir
+    Path dir;
+
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void crashReplaysTheJournalOverTheSnapshot() throws Exception {
+        Path live = dir.resolve("live");
+        TwinLockService service = start(live);
+        play(service);
+        long[] words = words(service);
+        EventClock.State clock = service.getEventClock();
+
+        Path crashed = copy(live, dir.resolve("crashed"));
+        TwinLockService restarted = start(crashed);
+
+        assertArrayEquals(words, words(restarted));
+        assertClock(clock, restarted.getEventClock());
+    }
+
+    @Test
+    void cleanStopRestoresFromTheSnapshotAlone() throws Exception {
+        Path live = dir.resolve("live");
+        TwinLockService service = start(live);
+        play(service);
+        long[] words = words(service);
+        EventClock.State clock = service.getEventClock();
+        stopFirst();
+        // the stop snapshotted and started an empty journal
+        assertEquals(12, Files.size(live.resolve("journal.bin")));
+
+        TwinLockService restarted = start(live);
+        assertArrayEquals(words, words(restarted));
+        assertClock(clock, restarted.getEventClock());
+    }
+
+    @Test
+    void aTornLastRecordIsDroppedAndTheRestReplayed() throws Exception {
+        Path live = dir.resolve("live");
+        TwinLockService service = start(live);
+        play(service);
+        long[] words = words(service);
+
+        Path crashed = copy(live, dir.resolve("crashed"));
+        // a record whose length promises more bytes than made it to disk
+        Files.write(crashed.resolve("journal.bin"), new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        assertArrayEquals(words, words(start(crashed)));
+    }
+
+    @Test
+    void aJournalOlderThanTheSnapshotIsIgnored() throws Exception {
+        Path live = dir.resolve("live");
+        TwinLockService service = start(live);
+        play(service);
+        Path older = copy(live, dir.resolve("older"));
+
+        // more transitions, then a clean stop: the snapshot is newer than the copied journal
+        service.resetNode("TEAM01", "SYS-01");
+        service.submit("TEAM02", "SYS-02", "wrong-9");
+        long[] words = words(service);
+        stopFirst();
+        Files.copy(older.resolve("journal.bin"), live.resolve("journal.bin"), StandardCopyOption.REPLACE_EXISTING);
+
+        // replaying it would roll TEAM01 / SYS-01 back to before the reset
+        assertArrayEquals(words, words(start(live)));
+    }
+
+    // ── helpers ─────────────────────────────────────────────────────
+
+    /** Logins, a level-up, wrong answers and a pause — one of each kind of record. */
+    private static void play(TwinLockService service) {
+        for (String[] n : NODES)
+            assertEquals("OK", service.login(n[0], n[1], key(service, n[0], n[1])).get("status"));
+        service.startEvent();
+        assertEquals("LEVEL_UP", service.submit("TEAM01", "SYS-01", "beta-28").get("status"));
+        service.submit("TEAM01", "SYS-02", "wrong-1");
+        service.submit("TEAM02", "SYS-01", "wrong-1");
+        service.submit("TEAM02", "SYS-01", "wrong-2");
+        service.pauseEvent();
+    }
+
+    private TwinLockService start(Path data) {
+        AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
+        ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "twinlock.team-count", 2,
+                "twinlock.secret-salt", "TEST_SALT",
+                "twinlock.audit.enabled", false,
+                "twinlock.persistence.enabled", true,
+                "twinlock.persistence.dir", data.toString())));
+        ctx.register(TwinLockService.class, AuditLog.class, SessionJournal.class);
+        ctx.refresh();
+        contexts.add(ctx);
+        return ctx.getBean(TwinLockService.class);
+    }
+
+    /** Clean stop of the first instance started. */
+    private void stopFirst() {
+        contexts.remove(0).close();
+    }
+
+    private static long[] words(TwinLockService service) {
+        long[] words = new long[NODES.length];
+        for (int i = 0; i < NODES.length; i++) {
+            NodeSession s = service.getSession(NODES[i][0], NODES[i][1]);
+            words[i] = s == null ? 0L : s.state();
+        }
+        for (long w : words)
+            assertNotEquals(0L, w);
+        return words;
+    }
+
+    private static String key(TwinLockService service, String team, String node) {
+        return service.getCredentialsSheet().stream()
+                .filter(r -> team.equals(r.get("teamId")) && node.equals(r.get("nodeId")))
+                .findFirst().orElseThrow().get("accessKey");
+    }
+
+    private static Path copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        for (String f : new String[] { "snapshot.bin", "journal.bin" })
+            Files.copy(from.resolve(f), to.resolve(f));
+        return to;
+    }
+
+    private static void assertClock(EventClock.State expected, EventClock.State actual) {
+        assertTrue(actual.isStarted());
+        assertEquals(expected.isPaused(), actual.isPaused());
+        assertEquals(expected.getOriginEpochMillis(), actual.getOriginEpochMillis());
+        assertEquals(expected.getPausedAtMillis(), actual.getPausedAtMillis());
+        assertEquals(expected.getExtensionMillis(), actual.getExtensionMillis());
+    }
+}
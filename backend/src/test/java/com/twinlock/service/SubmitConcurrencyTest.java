@@ -0,0 +1,229 @@
+package com.twinlock.service;
+
+import com.twinlock.model.NodeSession;
+import com.twinlock.model.SessionEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads submitting for one node at once. Every transition is one CAS
+ * on the node's state word, so whatever the interleaving a level is cleared
+ * once, no level takes more than MAX_ATTEMPTS wrong answers, and each
+ * transition — one version step — is answered and published exactly once.
+ *
+ * The service runs in a bare Spring context, as in the JMH benchmarks: only
+ * TwinLockService, its (disabled) AuditLog and an event counter.
+ */
+class SubmitConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int SUBMITS_PER_THREAD = 200;
+
+    // TEAM01's puzzle set; node 1's answers per level
+    private static final String TEAM = "TEAM01";
+    private static final String NODE = "SYS-01";
+    private static final String[] ANSWERS = { "beta-28", "morse-70", "unlock-76" };
+
+    private AnnotationConfigApplicationContext ctx;
+    private TwinLockService service;
+    private Events events;
+
+    /** Counts node transitions as published, once the event is running. */
+    static class Events {
+        final Map<SessionEvent.Type, AtomicInteger> counts = new EnumMap<>(SessionEvent.Type.class);
+
+        Events() {
+            for (SessionEvent.Type t : SessionEvent.Type.values())
+                counts.put(t, new AtomicInteger());
+        }
+
+        @EventListener
+        public void onSessionEvent(SessionEvent e) {
+            counts.get(e.getType()).incrementAndGet();
+        }
+
+        int count(SessionEvent.Type t) {
+            return counts.get(t).get();
+        }
+
+        void clear() {
+            counts.values().forEach(c -> c.set(0));
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        ctx = new AnnotationConfigApplicationContext();
+        ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "twinlock.team-count", 1,
+                "twinlock.secret-salt", "TEST_SALT",
+                "twinlock.audit.enabled", false)));
+        ctx.register(TwinLockService.class, AuditLog.class, Events.class);
+        ctx.refresh();
+        service = ctx.getBean(TwinLockService.class);
+        events = ctx.getBean(Events.class);
+
+        String key = service.getCredentialsSheet().stream()
+                .filter(r -> TEAM.equals(r.get("teamId")) && NODE.equals(r.get("nodeId")))
+                .findFirst().orElseThrow().get("accessKey");
+        assertEquals("OK", service.login(TEAM, NODE, key).get("status"));
+        service.startEvent();
+        events.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ctx.close();
+    }
+
+    @Test
+    void wrongAnswersLockAfterExactlyMaxAttempts() throws Exception {
+        long before = state();
+        List<Map<String, Object>> replies = hammer(i -> "wrong-0");
+
+        long after = state();
+        assertTrue(NodeSession.locked(after));
+        assertEquals(NodeSession.MAX_ATTEMPTS, NodeSession.attempts(after));
+        assertEquals(1, NodeSession.level(after));
+        // MAX_ATTEMPTS - 1 failures, then one lock — and nothing else moved the word
+        assertEquals(NodeSession.MAX_ATTEMPTS, NodeSession.version(after) - NodeSession.version(before));
+        assertEquals(NodeSession.MAX_ATTEMPTS - 1, count(replies, "FAIL"));
+        assertEquals(THREADS * SUBMITS_PER_THREAD - (NodeSession.MAX_ATTEMPTS - 1), count(replies, "LOCKED"));
+        assertEquals(NodeSession.MAX_ATTEMPTS - 1, events.count(SessionEvent.Type.FAIL));
+        assertEquals(1, events.count(SessionEvent.Type.LOCK));
+    }
+
+    @Test
+    void concurrentCorrectAnswersClearTheLevelOnce() throws Exception {
+        // everyone sends level 1's answer once; the losers see it cleared or spend an attempt on level 2
+        List<Map<String, Object>> replies = hammer(1, i -> ANSWERS[0]);
+
+        long st = state();
+        assertEquals(1, count(replies, "LEVEL_UP"));
+        assertEquals(1, events.count(SessionEvent.Type.LEVEL_UP));
+        assertEquals(2, NodeSession.level(st));
+        assertTrue(NodeSession.attempts(st) <= NodeSession.MAX_ATTEMPTS);
+        // the attempt that locks publishes LOCK instead of FAIL
+        assertEquals(NodeSession.attempts(st),
+                events.count(SessionEvent.Type.FAIL) + events.count(SessionEvent.Type.LOCK));
+    }
+
+    @RepeatedTest(5)
+    void mixedAnswersKeepEveryInvariant() throws Exception {
+        long before = state();
+        List<Map<String, Object>> replies = hammer(i -> {
+            int pick = ThreadLocalRandom.current().nextInt(ANSWERS.length + 1);
+            return pick < ANSWERS.length ? ANSWERS[pick] : "wrong-" + i;
+        });
+
+        long after = state();
+        int levelUps = events.count(SessionEvent.Type.LEVEL_UP);
+        int unlocks = events.count(SessionEvent.Type.UNLOCK);
+        int fails = events.count(SessionEvent.Type.FAIL);
+        int locks = events.count(SessionEvent.Type.LOCK);
+
+        // each level entered once, in order, and the node ends where the level-ups left it
+        assertEquals(levelUps, count(replies, "LEVEL_UP"));
+        assertEquals(1 + levelUps, NodeSession.level(after));
+        List<Object> reached = new ArrayList<>();
+        for (Map<String, Object> r : replies)
+            if ("LEVEL_UP".equals(r.get("status")))
+                reached.add(r.get("nextLevel"));
+        assertEquals(reached.stream().distinct().count(), reached.size());
+        assertEquals(unlocks, count(replies, "UNLOCK"));
+        assertTrue(unlocks <= 1 && locks <= 1 && unlocks + locks <= 1);
+        assertEquals(unlocks == 1, NodeSession.unlocked(after));
+        assertEquals(locks == 1, NodeSession.locked(after));
+        // the runs end one way or the other: 12,800 submits can't leave the node open
+        assertEquals(1, unlocks + locks);
+
+        // no level took more than MAX_ATTEMPTS wrong answers, the current one included
+        assertTrue(NodeSession.attempts(after) <= NodeSession.MAX_ATTEMPTS);
+        assertTrue(fails + locks <= NodeSession.MAX_ATTEMPTS * NodeSession.level(after));
+
+        // every transition is one version step, published once
+        assertEquals(levelUps + unlocks + fails + locks, NodeSession.version(after) - NodeSession.version(before));
+    }
+
+    @Test
+    void resetsRacingSubmitsNeverLogTheNodeOut() throws Exception {
+        AtomicInteger resets = new AtomicInteger();
+        long before = state();
+        List<Map<String, Object>> replies = hammer(i -> {
+            if (i % 4 == 0) {
+                service.resetNode(TEAM, NODE);
+                resets.incrementAndGet();
+            }
+            return "wrong-" + i;
+        });
+
+        assertEquals(0, replies.stream().filter(r -> "Not authenticated".equals(r.get("message"))).count());
+        assertEquals(resets.get(), events.count(SessionEvent.Type.RESET));
+        // a reset is one transition, like any other
+        assertEquals(resets.get() + events.count(SessionEvent.Type.FAIL) + events.count(SessionEvent.Type.LOCK),
+                NodeSession.version(state()) - NodeSession.version(before));
+    }
+
+    // ── helpers ─────────────────────────────────────────────────────
+
+    private interface Payloads {
+        String next(int i);
+    }
+
+    private List<Map<String, Object>> hammer(Payloads payloads) throws Exception {
+        return hammer(SUBMITS_PER_THREAD, payloads);
+    }
+
+    /** THREADS threads released together, each submitting {@code perThread} payloads. */
+    private List<Map<String, Object>> hammer(int perThread, Payloads payloads) throws Exception {
+        Queue<Map<String, Object>> replies = new ConcurrentLinkedQueue<>();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++)
+                running.add(pool.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < perThread; i++)
+                        replies.add(service.submit(TEAM, NODE, payloads.next(i)));
+                    return null;
+                }));
+            go.countDown();
+            for (Future<?> f : running)
+                f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ArrayList<>(replies);
+    }
+
+    private long state() {
+        return service.getSession(TEAM, NODE).state();
+    }
+
+    private static long count(List<Map<String, Object>> replies, String status) {
+        return replies.stream().filter(r -> status.equals(r.get("status"))).count();
+    }
+}
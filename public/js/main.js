@@ -22,14 +22,17 @@ var S = {
     attemptsRemaining: 3,
     cipher: null,
     cipherType: null,
-    hints: [],
-    hintCooldownUntil: 0,
-    hintCount: 0,
+    hints: [],              // released so far — the server adds one per cooldown
+    hintsTotal: 3,
+    nextHintAt: 0,          // epoch ms of the next release, 0 = none pending
+    hintCount: 0,           // hints shown on this terminal
     partnerUnlocked: false,
+    paused: false,          // window frozen by the authority
     formLink: null,
     inputEnabled: false,
     timerInterval: null,
-    pollInterval: null
+    pollInterval: null,
+    stream: null
 };
 
 // ── DOM Refs ─────────────────────────────────────────────────────
@@ -91,6 +94,122 @@ function apiGet(path) {
     return fetch(BACKEND + path).then(function (r) { return r.json(); });
 }
 
+// ── Node Socket ──────────────────────────────────────────────────
+// One WebSocket carries this node's login and submits up and its status
+// pushes down. Replies are matched to calls by id. Plain POSTs and the SSE
+// stream stay as the fallback whenever the socket cannot be opened.
+var _sock = null;          // open socket, if any
+var _sockBound = false;    // signed in on it — submits and pushes can use it
+var _sockPush = false;     // pushes go to handleStatus (between start/stopPolling)
+var _sockLive = null;      // status as assembled from the pushed deltas
+var _sockSeq = 0;
+var _sockCalls = {};
+
+function socketUrl(base) {
+    return (base || BACKEND || location.origin).replace(/^http/, "ws") + "/api/node/socket";
+}
+
+function openSocket(url) {
+    return new Promise(function (resolve, reject) {
+        var ws = new WebSocket(url);
+        ws.onopen = function () { resolve(ws); };
+        ws.onerror = function () { reject(new Error("socket")); };
+        ws.onmessage = function (e) { onSocketFrame(ws, JSON.parse(e.data)); };
+        ws.onclose = function () { onSocketClose(ws); };
+    });
+}
+
+// Rejects with { sent: false } if the frame never left, so the caller can
+// fall back to HTTP without risking a submit twice. A url (from a redirect)
+// replaces the current socket.
+function socketCall(op, body, url) {
+    if (!window.WebSocket) return Promise.reject({ sent: false });
+    var ready = (_sock && _sock.readyState === 1 && !url) ? Promise.resolve(_sock)
+        : openSocket(url || socketUrl()).then(function (ws) {
+            var old = _sock;
+            _sock = ws; _sockBound = false; _sockLive = null;
+            if (old) old.close();
+            return ws;
+        });
+    return ready.then(function (ws) {
+        return new Promise(function (resolve, reject) {
+            var id = ++_sockSeq;
+            _sockCalls[id] = { op: op, body: body, resolve: resolve, reject: reject };
+            ws.send(JSON.stringify(Object.assign({}, body, { op: op, id: id })));
+        });
+    }, function () { throw { sent: false }; });
+}
+
+function onSocketFrame(ws, d) {
+    if (ws !== _sock) return;
+    if (d.op === "status") {
+        if (d.full || !_sockLive) _sockLive = {};
+        (d.unset || []).forEach(function (k) { delete _sockLive[k]; });
+        Object.keys(d).forEach(function (k) {
+            if (k !== "op" && k !== "full" && k !== "unset") _sockLive[k] = d[k];
+        });
+        if (_sockPush) handleStatus(Object.assign({}, _sockLive));
+        return;
+    }
+    if (d.op === "tick") {
+        if (_sockPush && S.phase === "ACTIVE") syncTimer(d.timeRemainingSeconds);
+        return;
+    }
+    var call = d.id != null ? _sockCalls[d.id] : null;
+    if (!call) return; // ping, or an error without an id
+    delete _sockCalls[d.id];
+    if (d.op === "redirect") {
+        // the team lives on another instance — sign in there, then retry
+        var url = d.url.replace(/^http/, "ws");
+        var retry = call.op === "submit"
+            ? socketCall("restore", { teamId: S.teamId, nodeId: S.nodeId }, url)
+                .then(function () { return socketCall(call.op, call.body); })
+            : socketCall(call.op, call.body, url);
+        retry.then(call.resolve, call.reject);
+        return;
+    }
+    if ((d.op === "login" || d.op === "restore") && d.status === "OK") _sockBound = true;
+    delete d.op; delete d.id;
+    call.resolve(d);
+}
+
+function onSocketClose(ws) {
+    if (ws !== _sock) return;
+    _sock = null; _sockBound = false; _sockLive = null;
+    Object.keys(_sockCalls).forEach(function (id) { _sockCalls[id].reject({ sent: true }); });
+    _sockCalls = {};
+    if (!_sockPush) return;
+    // still watching — sign back in on a new socket, or fall back to the stream
+    _sockPush = false;
+    setTimeout(function () {
+        if (!S.teamId) return;
+        socketCall("restore", { teamId: S.teamId, nodeId: S.nodeId })
+            .then(startPolling, startPolling);
+    }, 1000);
+}
+
+// Login, restore and submit go over the socket when it can be had.
+function nodeCall(op, path, body) {
+    if (op === "submit" && !_sockBound) return apiPost(path, body);
+    return socketCall(op, body).catch(function (e) {
+        if (e && e.sent) throw e;
+        return apiPost(path, body);
+    });
+}
+
+// Conditional GET — resolves null on 304 (nothing changed since the last
+// full response, which is what the client already acted on).
+var _etags = {};
+function apiGetIfChanged(path) {
+    var headers = _etags[path] ? { "If-None-Match": _etags[path] } : {};
+    return fetch(BACKEND + path, { headers: headers, cache: "no-store" }).then(function (r) {
+        if (r.status === 304) return null;
+        var tag = r.headers.get("ETag");
+        if (tag) _etags[path] = tag;
+        return r.json();
+    });
+}
+
 // ════════════════════════════════════════════════════════════════
 //  HUD (Status Bar)
 // ════════════════════════════════════════════════════════════════
@@ -251,10 +370,18 @@ function phaseLogin(cmd, parts) {
         var nodeId = parts[2].toUpperCase();
         var accessKey = parts[3];
         println("[AUTH] Authenticating credentials...", "#00ccff");
-        apiPost("/api/auth/login", { teamId: teamId, nodeId: nodeId, accessKey: accessKey })
+        nodeCall("login", "/api/auth/login", { teamId: teamId, nodeId: nodeId, accessKey: accessKey })
             .then(function (d) {
                 if (d.status === "OK") {
                     doAuthSuccess(d);
+                } else if (d.status === "RATE_LIMITED") {
+                    println("[AUTH] Too many attempts. Retry in " + d.retryAfterSeconds + "s.", "#e09f14");
+                    br();
+                    enableInput();
+                } else if (d.status === "UNAVAILABLE") {
+                    println("[AUTH] Authority relay offline. Retry shortly.", "#e09f14");
+                    br();
+                    enableInput();
                 } else {
                     println("[AUTH] Authentication failed. Invalid credentials.", "#ff3333");
                     println("[AUTH] Verify teamId, nodeId, and accessKey then retry.", "#ff3333");
@@ -417,9 +544,8 @@ function groupHints(hints) {
 }
 
 function showHints() {
-    var now = Date.now();
     var groups = groupHints(S.hints);
-    var total = groups.length || 3;
+    var total = S.hintsTotal || 3;
 
     // All hints already shown
     if (S.hintCount >= total) {
@@ -430,27 +556,24 @@ function showHints() {
         enableInput(); return;
     }
 
-    // Cooldown check (skip for very first hint)
-    if (S.hintCount > 0 && now < S.hintCooldownUntil) {
-        var waitMs = S.hintCooldownUntil - now;
-        var waitMins = Math.floor(waitMs / 60000);
-        var waitSecs = Math.floor((waitMs % 60000) / 1000);
+    // Next hint not released by central authority yet
+    if (S.hintCount >= groups.length) {
         br();
         println("[SYS] Hint cooldown active.", "#ff3333");
-        println("[SYS] Hint " + (S.hintCount + 1) + " of " + total +
-            " unlocks in: " + (waitMins > 0 ? waitMins + "m " : "") + waitSecs + "s", "#ff3333");
+        if (S.nextHintAt) {
+            println("[SYS] Hint " + (S.hintCount + 1) + " of " + total +
+                " unlocks in: " + formatWait(S.nextHintAt - Date.now()), "#ff3333");
+        } else {
+            println("[SYS] No further hints will be released in this window.", "#ff3333");
+        }
         br();
         enableInput(); return;
     }
 
     // Reveal the next hint
     var idx = S.hintCount;   // 0-based index of hint to show NOW
-    var hintLines = groups[idx] || ["[HINT " + (idx + 1) + "] No hint available."];
-
-    // 5-minute cooldown between hints
-    var HINT_COOLDOWN_MS = 5 * 60 * 1000;
+    var hintLines = groups[idx];
     S.hintCount++;
-    S.hintCooldownUntil = Date.now() + HINT_COOLDOWN_MS;
 
     var levelLabel = ["EASY", "MEDIUM", "HARD"][(S.level || 1) - 1];
     var levelColor = ["#00ff41", "#e09f14", "#ff3333"][(S.level || 1) - 1];
@@ -473,16 +596,36 @@ function showHints() {
 
     println("\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500\u2500", "#333");
 
-    if (S.hintCount < total) {
-        println("[SYS] Hint " + (S.hintCount + 1) + " of " + total +
-            " available in 5 minutes.", "#555");
-    } else {
+    if (S.hintCount >= total) {
         println("[SYS] All hints have been revealed.", "#555");
+    } else if (S.hintCount < groups.length) {
+        println("[SYS] Hint " + (S.hintCount + 1) + " of " + total + " is available — type 'hint'.", "#555");
+    } else if (S.nextHintAt) {
+        println("[SYS] Hint " + (S.hintCount + 1) + " of " + total +
+            " available in " + formatWait(S.nextHintAt - Date.now()) + ".", "#555");
     }
     br();
     enableInput();
 }
 
+function formatWait(ms) {
+    var secs = Math.max(0, Math.ceil(ms / 1000));
+    var mins = Math.floor(secs / 60);
+    return (mins > 0 ? mins + "m " : "") + (secs % 60) + "s";
+}
+
+// Takes the released hints from a status or level-up payload; announces a new release
+function applyHints(d) {
+    var before = groupHints(S.hints).length;
+    S.hints = d.hints || [];
+    S.hintsTotal = d.hintsTotal || 3;
+    S.nextHintAt = d.nextHintAt || 0;
+    var after = groupHints(S.hints).length;
+    if (S.phase === "ACTIVE" && after > before && after > S.hintCount && S.inputEnabled) {
+        println("[SYS] Hint " + after + " of " + S.hintsTotal + " released — type 'hint' to view.", "#e09f14");
+    }
+}
+
 
 
 function redisplayCipher() {
@@ -503,11 +646,19 @@ function redisplayCipher() {
 
 function doSubmit(payload) {
     println("[SYS] Transmitting payload to central authority...", "#00ccff");
-    apiPost("/api/node/submit", { teamId: S.teamId, nodeId: S.nodeId, payload: payload })
+    nodeCall("submit", "/api/node/submit", { teamId: S.teamId, nodeId: S.nodeId, payload: payload })
         .then(function (d) {
             if (d.status === "UNLOCK") doUnlock(d);
             else if (d.status === "LEVEL_UP") doLevelUp(d);
             else if (d.status === "LOCKED") doPermanentLock();
+            else if (d.status === "RATE_LIMITED") {
+                println("[SYS] Transmission throttled. No attempt used — retry in " + d.retryAfterSeconds + "s.", "#e09f14");
+                enableInput();
+            }
+            else if (d.status === "UNAVAILABLE") {
+                println("[SYS] Authority relay offline. No attempt used — retry shortly.", "#e09f14");
+                enableInput();
+            }
             else doFail(d);
         })
         .catch(function () {
@@ -521,9 +672,9 @@ function doLevelUp(data) {
     S.level = data.nextLevel;
     S.cipher = data.cipher;
     S.cipherType = data.cipherType;
-    S.hints = data.hints || [];
+    S.hints = [];
     S.hintCount = 0;
-    S.hintCooldownUntil = 0;
+    applyHints(data);
     S.attemptsRemaining = data.attemptsRemaining || 3;
     updateHUD();
 
@@ -704,64 +855,116 @@ function handleEventEnd() {
 //  POLLING
 // ════════════════════════════════════════════════════════════════
 
+// Prefers pushes on the node socket, then the SSE stream; falls back to
+// interval polling on browsers without EventSource.
 function startPolling() {
-    if (S.pollInterval) return;
+    if (S.pollInterval || S.stream || _sockPush) return;
+    if (_sockBound) {
+        _sockPush = true;
+        if (_sockLive) handleStatus(Object.assign({}, _sockLive));
+        return;
+    }
+    if (window.EventSource) { openStream(); return; }
     S.pollInterval = setInterval(doPoll, POLL_MS);
 }
 
 function stopPolling() {
+    _sockPush = false;
+    if (S.stream) { S.stream.close(); S.stream = null; }
     if (S.pollInterval) { clearInterval(S.pollInterval); S.pollInterval = null; }
 }
 
+function nodeQuery() {
+    return "?teamId=" + encodeURIComponent(S.teamId) +
+        "&nodeId=" + encodeURIComponent(S.nodeId);
+}
+
+function openStream() {
+    if (!S.teamId || !S.nodeId) return;
+    S.stream = new EventSource(BACKEND + "/api/node/stream" + nodeQuery());
+    S.stream.addEventListener("status", function (e) {
+        handleStatus(JSON.parse(e.data));
+    });
+    S.stream.addEventListener("tick", function (e) {
+        var d = JSON.parse(e.data);
+        if (S.phase === "ACTIVE") syncTimer(d.timeRemainingSeconds);
+    });
+}
+
 function doPoll() {
     if (!S.teamId || !S.nodeId) return;
-    apiGet(
-        "/api/node/status?teamId=" + encodeURIComponent(S.teamId) +
-        "&nodeId=" + encodeURIComponent(S.nodeId)
-    )
-        .then(function (d) {
-            // Event just started
-            if (d.eventActive && S.phase === "WAITING") {
-                S.phase = "ACTIVE";
-                S.cipher = d.cipher;
-                S.cipherType = d.cipherType || "ENCRYPTED";
-                S.hints = d.hints || [];
-                S.level = d.level || 1;
-                S.attemptsRemaining = d.attemptsRemaining;
-                updateHUD();
-                stopPolling();
-                showEventStart(d);
-                return;
-            }
-            // Event ended while we were active
-            if (!d.eventActive && S.phase === "ACTIVE") {
-                handleEventEnd(); return;
-            }
-            // Node externally locked
-            if (d.nodeLocked && S.phase === "ACTIVE") {
-                doPermanentLock(); return;
-            }
-            // Partner just unlocked — show broadcast message (only once)
-            if (d.partnerUnlocked && !S.partnerUnlocked && S.phase === "ACTIVE") {
-                S.partnerUnlocked = true;
-                showPartnerUnlockedAlert(d.partnerNodeId || "PARTNER");
-            }
-            // Sync attempts + level count
-            if (typeof d.attemptsRemaining !== "undefined") {
-                S.attemptsRemaining = d.attemptsRemaining;
-                if (d.level) S.level = d.level;
-                updateHUD();
-            }
-            // Keep hints updated
-            if (d.hints) S.hints = d.hints;
-            // Sync timer
-            if (S.phase === "ACTIVE" && typeof d.timeRemainingSeconds !== "undefined") {
-                syncTimer(d.timeRemainingSeconds);
-            }
-        })
+    apiGetIfChanged("/api/node/status" + nodeQuery())
+        .then(function (d) { if (d) handleStatus(d); })
         .catch(function () { /* silent */ });
 }
 
+function handleStatus(d) {
+    // Event just started
+    if (d.eventActive && S.phase === "WAITING") {
+        S.phase = "ACTIVE";
+        S.cipher = d.cipher;
+        S.cipherType = d.cipherType || "ENCRYPTED";
+        applyHints(d);
+        S.level = d.level || 1;
+        S.attemptsRemaining = d.attemptsRemaining;
+        updateHUD();
+        stopPolling();
+        showEventStart(d);
+        return;
+    }
+    // Window paused — hold the terminal until it resumes
+    if (d.eventPaused && S.phase === "ACTIVE") {
+        if (!S.paused) showPaused(d);
+        return;
+    }
+    if (S.paused && d.eventActive) showResumed(d);
+    // Event ended while we were active
+    if (!d.eventActive && S.phase === "ACTIVE") {
+        handleEventEnd(); return;
+    }
+    // Node externally locked
+    if (d.nodeLocked && S.phase === "ACTIVE") {
+        doPermanentLock(); return;
+    }
+    // Partner just unlocked — show broadcast message (only once)
+    if (d.partnerUnlocked && !S.partnerUnlocked && S.phase === "ACTIVE") {
+        S.partnerUnlocked = true;
+        showPartnerUnlockedAlert(d.partnerNodeId || "PARTNER");
+    }
+    // Sync attempts + level count
+    if (d.level && d.level !== S.level) { S.hints = []; S.hintCount = 0; }
+    if (typeof d.attemptsRemaining !== "undefined") {
+        S.attemptsRemaining = d.attemptsRemaining;
+        if (d.level) S.level = d.level;
+        updateHUD();
+    }
+    // Keep hints updated — a new one arrives each cooldown
+    if (d.hints && S.phase === "ACTIVE") applyHints(d);
+    // Sync timer
+    if (S.phase === "ACTIVE" && typeof d.timeRemainingSeconds !== "undefined") {
+        syncTimer(d.timeRemainingSeconds);
+    }
+}
+
+function showPaused(d) {
+    S.paused = true;
+    stopTimer();
+    disableInput();
+    setTimerDisplay("PAUSED " + formatTime(d.timeRemainingSeconds), false);
+    br();
+    println("[SYS] Decryption window PAUSED by central authority.", "#e09f14");
+    println("[SYS] Time remaining is frozen at " + formatTime(d.timeRemainingSeconds) + ". Stand by.", "#555");
+    br();
+}
+
+function showResumed(d) {
+    S.paused = false;
+    println("[SYS] Decryption window RESUMED.", "#00ff41");
+    br();
+    startTimer(d.timeRemainingSeconds);
+    enableInput();
+}
+
 function showPartnerUnlockedAlert(partnerNodeId) {
     disableInput();
     br();
@@ -847,7 +1050,7 @@ function restoreSession(onDone) {
         var sess = JSON.parse(raw);
         if (!sess.teamId || !sess.nodeId) { onDone(false); return; }
         // Re-validate with backend
-        apiPost("/api/auth/restore", { teamId: sess.teamId, nodeId: sess.nodeId })
+        nodeCall("restore", "/api/auth/restore", { teamId: sess.teamId, nodeId: sess.nodeId })
             .then(function (d) {
                 if (d.status === "OK") {
                     S.teamId = sess.teamId;
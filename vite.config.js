@@ -14,7 +14,8 @@ export default defineConfig(({ mode }) => {
         // In dev, proxy /api/* to local Spring Boot so BACKEND='' works
         '/api': {
           target: 'http://localhost:8080',
-          changeOrigin: true
+          changeOrigin: true,
+          ws: true // /api/node/socket
         }
       }
     }